@@ -5,6 +5,10 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -25,6 +29,13 @@ public class PebbleDictionary implements Iterable<PebbleTuple> {
     private static final String LENGTH = "length";
     private static final String VALUE = "value";
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Size of the tuple header in binary representation (key, type and length).
+     */
+    private static final int TUPLE_HEADER_SIZE = 4 + 1 + 2;
+
     protected final Map<Integer, PebbleTuple> tuples = new HashMap<Integer, PebbleTuple>();
 
     /**
@@ -285,16 +296,158 @@ public class PebbleDictionary implements Iterable<PebbleTuple> {
      * @return a JSON representation of this dictionary
      */
     public String toJsonString() {
+        StringBuilder builder = new StringBuilder(48 * tuples.size() + 2);
+        builder.append('[');
+
+        boolean first = true;
+        for (PebbleTuple t : tuples.values()) {
+            if (!first) {
+                builder.append(',');
+            }
+            first = false;
+
+            builder.append("{\"").append(KEY).append("\":").append(t.key);
+            builder.append(",\"").append(TYPE).append("\":\"").append(t.type.getName());
+            builder.append("\",\"").append(LENGTH).append("\":").append(t.width.value);
+            builder.append(",\"").append(VALUE).append("\":");
+
+            switch (t.type) {
+                case BYTES:
+                    builder.append('"').append(Base64.encodeToString((byte[]) t.value, Base64.NO_WRAP)).append('"');
+                    break;
+                case STRING:
+                    builder.append(JSONObject.quote((String) t.value));
+                    break;
+                case INT:
+                case UINT:
+                    builder.append(((Long) t.value).longValue());
+                    break;
+            }
+
+            builder.append('}');
+        }
+
+        builder.append(']');
+        return builder.toString();
+    }
+
+    /**
+     * Returns a compact binary representation of this dictionary. The layout matches the AppMessage dictionary format
+     * used by the watch: tuple count (uint8) followed by key (uint32), type (uint8), length (uint16) and value of every
+     * tuple, all little-endian. Strings are stored null-terminated.
+     *
+     * @return a binary representation of this dictionary
+     */
+    public byte[] toByteArray() {
+        int size = 1;
+        for (PebbleTuple t : tuples.values()) {
+            size += TUPLE_HEADER_SIZE + t.length;
+            if (t.type == PebbleTuple.TupleType.STRING) {
+                size++;
+            }
+        }
+
+        byte[] bytes = new byte[size];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.put((byte) tuples.size());
+        for (PebbleTuple t : tuples.values()) {
+            buffer.putInt(t.key);
+            buffer.put(t.type.ord);
+
+            switch (t.type) {
+                case BYTES:
+                    byte[] value = (byte[]) t.value;
+                    buffer.putShort((short) value.length);
+                    buffer.put(value);
+                    break;
+                case STRING:
+                    byte[] string = ((String) t.value).getBytes(UTF8);
+                    buffer.putShort((short) (string.length + 1));
+                    buffer.put(string);
+                    buffer.put((byte) 0);
+                    break;
+                case INT:
+                case UINT:
+                    buffer.putShort((short) t.width.value);
+                    long number = (Long) t.value;
+                    if (t.width == PebbleTuple.Width.BYTE) {
+                        buffer.put((byte) number);
+                    } else if (t.width == PebbleTuple.Width.SHORT) {
+                        buffer.putShort((short) number);
+                    } else {
+                        buffer.putInt((int) number);
+                    }
+                    break;
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Deserializes a binary representation of a PebbleDictionary created with {@link #toByteArray()}.
+     *
+     * @param bytes
+     *         the binary representation to be deserialized
+     *
+     * @throws IllegalArgumentException
+     *         thrown if the specified binary representation is malformed
+     */
+    public static PebbleDictionary fromByteArray(byte[] bytes) throws IllegalArgumentException {
+        PebbleDictionary d = new PebbleDictionary();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
         try {
-            JSONArray array = new JSONArray();
-            for (PebbleTuple t : tuples.values()) {
-                array.put(serializeTuple(t));
+            int count = buffer.get() & 0xFF;
+            for (int i = 0; i < count; i++) {
+                final int key = buffer.getInt();
+                final byte type = buffer.get();
+                final int length = buffer.getShort() & 0xFFFF;
+
+                if (type == PebbleTuple.TupleType.BYTES.ord) {
+                    byte[] value = new byte[length];
+                    buffer.get(value);
+                    d.addBytes(key, value);
+                } else if (type == PebbleTuple.TupleType.STRING.ord) {
+                    int stringLength = length;
+                    if (stringLength > 0 && bytes[buffer.position() + stringLength - 1] == 0) {
+                        stringLength--;
+                    }
+
+                    d.addString(key, new String(bytes, buffer.position(), stringLength, UTF8));
+                    buffer.position(buffer.position() + length);
+                } else if (type == PebbleTuple.TupleType.INT.ord) {
+                    if (length == 1) {
+                        d.addInt8(key, buffer.get());
+                    } else if (length == 2) {
+                        d.addInt16(key, buffer.getShort());
+                    } else if (length == 4) {
+                        d.addInt32(key, buffer.getInt());
+                    } else {
+                        throw new IllegalArgumentException("Invalid integer width " + length + " for key " + key);
+                    }
+                } else if (type == PebbleTuple.TupleType.UINT.ord) {
+                    if (length == 1) {
+                        d.addUint8(key, buffer.get());
+                    } else if (length == 2) {
+                        d.addUint16(key, buffer.getShort());
+                    } else if (length == 4) {
+                        d.addUint32(key, buffer.getInt());
+                    } else {
+                        throw new IllegalArgumentException("Invalid integer width " + length + " for key " + key);
+                    }
+                } else {
+                    throw new IllegalArgumentException("Unknown tuple type " + type + " for key " + key);
+                }
             }
-            return array.toString();
-        } catch (JSONException je) {
-            je.printStackTrace();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Dictionary data is truncated");
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Dictionary data is truncated");
         }
-        return null;
+
+        return d;
     }
 
     /**
@@ -347,24 +500,4 @@ public class PebbleDictionary implements Iterable<PebbleTuple> {
 
         return d;
     }
-
-    private static JSONObject serializeTuple(PebbleTuple t) throws JSONException {
-        JSONObject j = new JSONObject();
-        j.put(KEY, t.key);
-        j.put(TYPE, t.type.getName());
-        j.put(LENGTH, t.width.value);
-
-        switch (t.type) {
-            case BYTES:
-                j.put(VALUE, Base64.encodeToString((byte[]) t.value, Base64.NO_WRAP));
-                break;
-            case STRING:
-            case INT:
-            case UINT:
-                j.put(VALUE, t.value);
-                break;
-        }
-
-        return j;
-    }
 }
@@ -2,6 +2,7 @@ package com.getpebble.android.kit.util;
 
 import java.nio.charset.Charset;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -108,13 +109,15 @@ final class PebbleTuple {
         INT(3);
 
         public final byte ord;
+        private final String typeName;
 
         private TupleType(int ord) {
             this.ord = (byte) ord;
+            this.typeName = name().toLowerCase(Locale.US);
         }
 
         public String getName() {
-            return name().toLowerCase();
+            return typeName;
         }
     }
 }
@@ -3,6 +3,7 @@ package com.matejdro.pebblenotificationcenter;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import com.crashlytics.android.Crashlytics;
 import com.getpebble.android.kit.PebbleKit;
 import com.getpebble.android.kit.util.PebbleDictionary;
 import java.util.UUID;
@@ -17,12 +18,12 @@ public class DataReceiver extends BroadcastReceiver {
 
 	public final static UUID pebbleAppUUID = UUID.fromString("0a7575eb-e5b9-456b-8701-3eacb62d74f1");
 	
-	public void receiveData(final Context context, final int transactionId, final String jsonPacket)
+	public void receiveData(final Context context, final int transactionId, final PebbleDictionary data)
 	{
 		PebbleKit.sendAckToPebble(context, transactionId);
 
         Intent intent = new Intent(context, PebbleTalkerService.class);
-        intent.putExtra("packet", jsonPacket);
+        intent.putExtra("packet", data.toByteArray());
         context.startService(intent);
 	}
 	
@@ -51,14 +52,19 @@ public class DataReceiver extends BroadcastReceiver {
 			return;
 		}
 
-        receiveData(context, transactionId, jsonData);
-
-        try {
-			final PebbleDictionary data = PebbleDictionary.fromJson(jsonData);
+		//JSON is parsed only here, service receives compact binary form of the dictionary
+		final PebbleDictionary data;
+		try {
+			data = PebbleDictionary.fromJson(jsonData);
 		} catch (JSONException e) {
+			Crashlytics.logException(e);
 			e.printStackTrace();
+
+			PebbleKit.sendNackToPebble(context, transactionId);
 			return;
 		}
+
+        receiveData(context, transactionId, data);
 	}
 
 }
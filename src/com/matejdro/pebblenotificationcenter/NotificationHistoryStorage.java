@@ -1,78 +1,756 @@
 package com.matejdro.pebblenotificationcenter;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.SharedPreferences.Editor;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
+import com.matejdro.pebblenotificationcenter.util.TextCompressor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import timber.log.Timber;
 
 public class NotificationHistoryStorage extends SQLiteOpenHelper {
+	private static final int DATABASE_VERSION = 2;
+	public static final int DEFAULT_HISTORY_DEPTH = 150;
 
+	//Pending notifications are written when there is that many of them or when oldest one waited long enough
+	private static final int FLUSH_BATCH_SIZE = 20;
+	private static final int FLUSH_DELAY = 3000;
+
+	public static final int DEFAULT_HISTORY_MAX_AGE = 30;
+	public static final int DEFAULT_HISTORY_MAX_SIZE = 1024;
+	private static final int MIN_KEPT_ENTRIES = 100;
+
+	//Old entries are deleted in small batches with pauses between them, so writer thread is never blocked for long
+	private static final long RETENTION_INTERVAL = 1000 * 3600 * 6;
+	private static final int RETENTION_BATCH_SIZE = 50;
+	private static final int RETENTION_BATCH_DELAY = 500;
+	private static final String ROW_SIZE = "IFNULL(LENGTH(Title), 0) + IFNULL(LENGTH(Subtitle), 0) + IFNULL(LENGTH(Text), 0) + IFNULL(LENGTH(TextCompressed), 0)";
 
 	private Context context;
+
+	private HandlerThread writerThread;
+	private Handler writerHandler;
+	//Guarded by this. Once set, writer thread is never started again.
+	private boolean closed;
+	private final List<PendingEntry> pendingEntries = new ArrayList<PendingEntry>();
+	private SQLiteStatement insertStatement;
+	private SQLiteStatement searchInsertStatement;
+	private TextCompressor textCompressor;
+
+	private final Object retentionLock = new Object();
+	private boolean retentionRunning;
+	private long lastRetentionRun;
+	private int lastRetentionDeleted;
+	private long lastRetentionDuration;
+	private long totalRetentionDeleted;
+
+	private final Runnable flushRunnable = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			writePendingEntries();
+		}
+	};
 	
 	public NotificationHistoryStorage(Context context) {
-		super(context, "notifications", null, 1);
+		super(context, "notifications", null, DATABASE_VERSION);
 		this.context = context;
 	}
 
 
 	@Override
 	public void onCreate(SQLiteDatabase db) {
-		db.execSQL("CREATE TABLE IF NOT EXISTS notifications (PostTime INTEGER, Title STRING, Subtitle STRING, Text STRING)");
+		createNotificationsTable(db, "notifications");
+		createIndexes(db);
+		createSearchTable(db);
 	}
 
 
 	@Override
-	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {		
+	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+		if (oldVersion < 2)
+		{
+			//Version 1 table had no primary key, so it is recreated rather than altered
+			createNotificationsTable(db, "notifications_v2");
+			//Version 1 allowed rows without post time, which new table does not accept
+			db.execSQL("INSERT INTO notifications_v2 (PostTime, Title, Subtitle, Text) SELECT IFNULL(PostTime, 0), Title, Subtitle, Text FROM notifications");
+			db.execSQL("DROP TABLE notifications");
+			db.execSQL("ALTER TABLE notifications_v2 RENAME TO notifications");
+			createIndexes(db);
+			createSearchTable(db);
+			fillSearchTable(db);
+		}
 	}
 
+	private static void createNotificationsTable(SQLiteDatabase db, String name)
+	{
+		db.execSQL("CREATE TABLE IF NOT EXISTS " + name + " (_id INTEGER PRIMARY KEY, PostTime INTEGER NOT NULL, Title TEXT, Subtitle TEXT, Text TEXT, Package TEXT, NotificationKey TEXT, WearGroup TEXT, TextCompressed BLOB)");
+	}
 
-	public void storeNotification(long time, String title, String subtitle, String text)
+	/**
+	 * Full text index of notifications (docid = _id). It only stores the index, text itself is read from notifications table.
+	 * Rows are added and removed by the writer, since compressed text is not visible to SQL.
+	 */
+	private static void createSearchTable(SQLiteDatabase db)
 	{
-		ContentValues values = new ContentValues();
-		values.put("PostTime", time);
-		values.put("Title", title);
-		values.put("Subtitle", subtitle);
-		values.put("Text", text);
+		try
+		{
+			db.execSQL("CREATE VIRTUAL TABLE notifications_fts USING fts4(content=\"notifications\", Title, Subtitle, Text)");
+		} catch (SQLException e)
+		{
+			//SQLite before 3.7.9 (Android 4.0.x) does not support external content, so index keeps its own copy there
+			Timber.w("External content search table is not supported");
+			db.execSQL("CREATE VIRTUAL TABLE notifications_fts USING fts4(Title, Subtitle, Text)");
+		}
+	}
 
-		getWritableDatabase().insert("notifications", null, values);
-	}	
+	private static void fillSearchTable(SQLiteDatabase db)
+	{
+		SQLiteStatement statement = db.compileStatement("INSERT INTO notifications_fts (docid, Title, Subtitle, Text) VALUES (?, ?, ?, ?)");
+		Cursor cursor = db.rawQuery("SELECT _id, Title, Subtitle, Text, TextCompressed FROM notifications", null);
+		try
+		{
+			while (cursor.moveToNext())
+			{
+				statement.clearBindings();
+				statement.bindLong(1, cursor.getLong(0));
+				bindString(statement, 2, cursor.getString(1));
+				bindString(statement, 3, cursor.getString(2));
+				bindString(statement, 4, cursor.isNull(4) ? cursor.getString(3) : TextCompressor.decompress(cursor.getBlob(4)));
+				statement.executeInsert();
+			}
+		}
+		finally
+		{
+			cursor.close();
+			statement.close();
+		}
+	}
+
+	/**
+	 * Deletes notifications with specified IDs and their search index entries. Must be called inside transaction.
+	 */
+	private static void deleteEntries(SQLiteDatabase db, String ids)
+	{
+		//Search table reads text that should be removed from the index from notifications table, so compressed
+		//text has to be put back there first, otherwise its words would stay in the index.
+		SQLiteStatement restoreStatement = db.compileStatement("UPDATE notifications SET Text = ? WHERE _id = ?");
+		Cursor cursor = db.rawQuery("SELECT _id, TextCompressed FROM notifications WHERE _id IN (" + ids + ") AND TextCompressed IS NOT NULL", null);
+		try
+		{
+			while (cursor.moveToNext())
+			{
+				restoreStatement.clearBindings();
+				bindString(restoreStatement, 1, TextCompressor.decompress(cursor.getBlob(1)));
+				restoreStatement.bindLong(2, cursor.getLong(0));
+				restoreStatement.execute();
+			}
+		}
+		finally
+		{
+			cursor.close();
+			restoreStatement.close();
+		}
+
+		db.execSQL("DELETE FROM notifications_fts WHERE docid IN (" + ids + ")");
+		db.delete("notifications", "_id IN (" + ids + ")", null);
+	}
+
+	private static void createIndexes(SQLiteDatabase db)
+	{
+		db.execSQL("CREATE INDEX IF NOT EXISTS notifications_time ON notifications (PostTime)");
+		db.execSQL("CREATE INDEX IF NOT EXISTS notifications_package ON notifications (Package, PostTime)");
+	}
+
+	/**
+	 * Queues notification to be written to the database on the background thread.
+	 */
+	public void storeNotification(long time, PebbleNotification notification)
+	{
+		int numOfPending;
+		synchronized (pendingEntries)
+		{
+			pendingEntries.add(new PendingEntry(time, notification));
+			numOfPending = pendingEntries.size();
+		}
+
+		Handler handler = getWriterHandler();
+		if (handler == null)
+		{
+			Timber.w("Notification stored after history storage was closed");
+			return;
+		}
+
+		if (numOfPending >= FLUSH_BATCH_SIZE)
+		{
+			handler.removeCallbacks(flushRunnable);
+			handler.post(flushRunnable);
+		}
+		else if (numOfPending == 1)
+		{
+			handler.postDelayed(flushRunnable, FLUSH_DELAY);
+		}
+	}
+
+	/**
+	 * Blocks until all queued notifications are written to the database, including batch that writer thread is writing right now.
+	 */
+	public void flush()
+	{
+		Handler handler;
+		synchronized (this)
+		{
+			handler = writerHandler;
+		}
+
+		if (handler == null)
+		{
+			synchronized (pendingEntries)
+			{
+				if (pendingEntries.isEmpty())
+					return;
+			}
+
+			handler = getWriterHandler();
+			if (handler == null)
+				return;
+		}
+
+		if (Looper.myLooper() == handler.getLooper())
+		{
+			writePendingEntries();
+			return;
+		}
+
+		//Barrier is posted even when nothing is pending, since writer might have already taken the last batch
+		final CountDownLatch latch = new CountDownLatch(1);
+		boolean posted = handler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				writePendingEntries();
+				latch.countDown();
+			}
+		});
+
+		if (!posted)
+			return;
+
+		try
+		{
+			latch.await();
+		} catch (InterruptedException e)
+		{
+		}
+	}
+
+	/**
+	 * @return handler of the writer thread or null if storage is already closed.
+	 */
+	private synchronized Handler getWriterHandler()
+	{
+		if (closed)
+			return null;
+
+		if (writerThread == null)
+		{
+			writerThread = new HandlerThread("NotificationHistoryWriter", Process.THREAD_PRIORITY_BACKGROUND);
+			writerThread.start();
+			writerHandler = new Handler(writerThread.getLooper());
+		}
+
+		return writerHandler;
+	}
+
+	private void writePendingEntries()
+	{
+		List<PendingEntry> entries;
+		synchronized (pendingEntries)
+		{
+			if (pendingEntries.isEmpty())
+				return;
+
+			entries = new ArrayList<PendingEntry>(pendingEntries);
+			pendingEntries.clear();
+		}
+
+		SQLiteDatabase database = getWritableDatabase();
+		if (insertStatement == null)
+		{
+			insertStatement = database.compileStatement("INSERT INTO notifications (PostTime, Title, Subtitle, Text, Package, NotificationKey, WearGroup, TextCompressed) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+			searchInsertStatement = database.compileStatement("INSERT INTO notifications_fts (docid, Title, Subtitle, Text) VALUES (?, ?, ?, ?)");
+		}
+
+		boolean compress = PreferenceManager.getDefaultSharedPreferences(context).getBoolean(PebbleNotificationCenter.COMPRESS_HISTORY, true);
+		if (compress && textCompressor == null)
+			textCompressor = new TextCompressor();
+
+		database.beginTransaction();
+		try
+		{
+			for (PendingEntry entry : entries)
+			{
+				byte[] compressedText = null;
+				if (compress && entry.text != null)
+					compressedText = textCompressor.compress(entry.text);
+
+				insertStatement.clearBindings();
+				insertStatement.bindLong(1, entry.time);
+				bindString(insertStatement, 2, entry.title);
+				bindString(insertStatement, 3, entry.subtitle);
+				if (compressedText == null)
+				{
+					bindString(insertStatement, 4, entry.text);
+					insertStatement.bindNull(8);
+				}
+				else
+				{
+					insertStatement.bindNull(4);
+					insertStatement.bindBlob(8, compressedText);
+				}
+				bindString(insertStatement, 5, entry.pkg);
+				bindString(insertStatement, 6, entry.key);
+				bindString(insertStatement, 7, entry.wearGroup);
+				long id = insertStatement.executeInsert();
+
+				searchInsertStatement.clearBindings();
+				searchInsertStatement.bindLong(1, id);
+				bindString(searchInsertStatement, 2, entry.title);
+				bindString(searchInsertStatement, 3, entry.subtitle);
+				bindString(searchInsertStatement, 4, entry.text);
+				searchInsertStatement.executeInsert();
+			}
+
+			database.setTransactionSuccessful();
+		}
+		finally
+		{
+			database.endTransaction();
+		}
+
+		enforceRetention(false);
+	}
+
+	/**
+	 * @return text of the notification with specified ID or null if it does not exist.
+	 */
+	public String loadText(long id)
+	{
+		Cursor cursor = getReadableDatabase().rawQuery("SELECT Text, TextCompressed FROM notifications WHERE _id = ?", new String[] { Long.toString(id) });
+		try
+		{
+			if (!cursor.moveToNext())
+				return null;
+
+			if (!cursor.isNull(1))
+				return TextCompressor.decompress(cursor.getBlob(1));
+
+			return cursor.getString(0);
+		}
+		finally
+		{
+			cursor.close();
+		}
+	}
+
+	/**
+	 * @return maximum number of notifications that are displayed in history list.
+	 */
+	public int getHistoryDepth()
+	{
+		try
+		{
+			return Math.max(1, Integer.parseInt(PreferenceManager.getDefaultSharedPreferences(context).getString(PebbleNotificationCenter.HISTORY_DEPTH, Integer.toString(DEFAULT_HISTORY_DEPTH))));
+		} catch (NumberFormatException e)
+		{
+			return DEFAULT_HISTORY_DEPTH;
+		}
+	}
+
+	/**
+	 * @return cursor with ID, post time, title and subtitle of newest notifications that match the filter.
+	 */
+	public Cursor queryHistory(Filter filter, int limit)
+	{
+		flush();
+
+		return getReadableDatabase().rawQuery("SELECT _id, PostTime, Title, Subtitle FROM notifications WHERE " + filter.getSelection() + " ORDER BY PostTime DESC, _id DESC LIMIT " + limit, filter.getSelectionArgs());
+	}
+
+	/**
+	 * Condition that selects subset of notification history.
+	 */
+	public static class Filter
+	{
+		public static final Filter ALL = new Filter("1", new String[0]);
+
+		private final String selection;
+		private final String[] selectionArgs;
+
+		private Filter(String selection, String[] selectionArgs)
+		{
+			this.selection = selection;
+			this.selectionArgs = selectionArgs;
+		}
+
+		public String getSelection()
+		{
+			return selection;
+		}
+
+		public String[] getSelectionArgs()
+		{
+			return selectionArgs;
+		}
+
+		/**
+		 * @return filter that matches notifications containing all words from the search term (words can also be prefixes).
+		 */
+		public static Filter search(String term)
+		{
+			StringBuilder query = new StringBuilder();
+			for (String word : term.replace("\"", " ").replace("*", " ").trim().split("\\s+"))
+			{
+				if (word.isEmpty())
+					continue;
+
+				if (query.length() > 0)
+					query.append(' ');
+				query.append('"').append(word).append("*\"");
+			}
+
+			if (query.length() == 0)
+				return ALL;
+
+			return new Filter("_id IN (SELECT docid FROM notifications_fts WHERE notifications_fts MATCH ?)", new String[] { query.toString() });
+		}
+
+		public static Filter newerThan(long time)
+		{
+			return new Filter("PostTime >= ?", new String[] { Long.toString(time) });
+		}
+	}
+
+	private static void bindString(SQLiteStatement statement, int index, String value)
+	{
+		if (value == null)
+			statement.bindNull(index);
+		else
+			statement.bindString(index, value);
+	}
 
 	@Override
-	public synchronized void close() {
-		getWritableDatabase().close();
-		super.close();
+	public void close() {
+		//Nothing new can be posted to the writer from now on, so flush below is the last thing it runs
+		synchronized (this)
+		{
+			closed = true;
+		}
+
+		//Must not hold the lock while waiting, since writer thread needs it to access the database
+		flush();
+
+		synchronized (this)
+		{
+			if (writerThread != null)
+			{
+				writerThread.quit();
+				writerThread = null;
+				writerHandler = null;
+			}
+
+			if (insertStatement != null)
+			{
+				insertStatement.close();
+				searchInsertStatement.close();
+				insertStatement = null;
+				searchInsertStatement = null;
+			}
+
+			if (textCompressor != null)
+			{
+				textCompressor.release();
+				textCompressor = null;
+			}
+
+			getWritableDatabase().close();
+			super.close();
+		}
 	}	
 
     public void clearDatabase()
     {
         SQLiteDatabase database = getWritableDatabase();
 
-        database.delete("notifications", null, null);
+        //Search table is recreated rather than cleared row by row, which would need text of every compressed row
+        database.beginTransaction();
+        try
+        {
+            database.delete("notifications", null, null);
+            database.execSQL("DROP TABLE notifications_fts");
+            createSearchTable(database);
+            database.setTransactionSuccessful();
+        }
+        finally
+        {
+            database.endTransaction();
+        }
 
+        long now = System.currentTimeMillis();
+        synchronized (retentionLock)
+        {
+            lastRetentionRun = now;
+        }
 
         Editor editor = PreferenceManager.getDefaultSharedPreferences(context).edit();
-        editor.putLong("lastCleanup", System.currentTimeMillis());
+        editor.putLong("lastCleanup", now);
         editor.apply();
     }
 
-	public void cleanDatabase()
-	{		
-		SQLiteDatabase database = getWritableDatabase();
-		Cursor cursor = database.rawQuery("SELECT MIN(PostTime) FROM (SELECT PostTime FROM notifications ORDER BY PostTime DESC LIMIT 100)", null);
-		if (!cursor.moveToNext())
-			return;
-
-		long lastDate = cursor.getLong(0);
+	/**
+	 * Starts retention run on the writer thread if last one was long enough ago.
+	 * Run deletes old entries in small batches, so queued notifications can still be written between them.
+	 */
+	public void enforceRetention(boolean force)
+	{
+		synchronized (retentionLock)
+		{
+			if (retentionRunning)
+				return;
 
-		database.delete("notifications", "PostTime < ?", new String[] {Long.toString(lastDate)});
+			long now = System.currentTimeMillis();
+			if (lastRetentionRun == 0)
+				lastRetentionRun = PreferenceManager.getDefaultSharedPreferences(context).getLong("lastCleanup", 0);
+			if (!force && now - lastRetentionRun < RETENTION_INTERVAL)
+				return;
 
+			retentionRunning = true;
+			lastRetentionRun = now;
+		}
 
 		Editor editor = PreferenceManager.getDefaultSharedPreferences(context).edit();
-		editor.putLong("lastCleanup", System.currentTimeMillis());
+		editor.putLong("lastCleanup", lastRetentionRun);
 		editor.apply();
+
+		Handler handler = getWriterHandler();
+		if (handler == null)
+		{
+			synchronized (retentionLock)
+			{
+				retentionRunning = false;
+			}
+			return;
+		}
+
+		handler.post(new RetentionRun());
+	}
+
+	public long getLastRetentionRun()
+	{
+		synchronized (retentionLock)
+		{
+			return lastRetentionRun;
+		}
+	}
+
+	public int getLastRetentionDeletedCount()
+	{
+		synchronized (retentionLock)
+		{
+			return lastRetentionDeleted;
+		}
+	}
+
+	public long getLastRetentionDuration()
+	{
+		synchronized (retentionLock)
+		{
+			return lastRetentionDuration;
+		}
+	}
+
+	public long getTotalRetentionDeletedCount()
+	{
+		synchronized (retentionLock)
+		{
+			return totalRetentionDeleted;
+		}
+	}
+
+	private int getIntPreference(String key, int defaultValue)
+	{
+		try
+		{
+			return Math.max(0, Integer.parseInt(PreferenceManager.getDefaultSharedPreferences(context).getString(key, Integer.toString(defaultValue))));
+		} catch (NumberFormatException e)
+		{
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Deletes oldest entries that exceed any of the limits (count, age or size), one batch per step.
+	 * Limits are read once at the start. Entries are always removed from the oldest one, so every step can stop
+	 * at first entry that does not exceed any limit.
+	 */
+	private class RetentionRun implements Runnable
+	{
+		private final long startTime = SystemClock.elapsedRealtime();
+
+		private boolean initialized;
+		private long ageCutoff;
+		private long excessRows;
+		private long excessBytes;
+		private int deleted;
+		private int batches;
+
+		@Override
+		public void run()
+		{
+			boolean finished = true;
+			try
+			{
+				writePendingEntries();
+
+				SQLiteDatabase database = getWritableDatabase();
+				if (!initialized)
+					initialize(database);
+
+				finished = deleteBatch(database);
+			}
+			finally
+			{
+				Handler handler = finished ? null : getWriterHandler();
+				if (handler == null)
+					finish();
+				else
+					handler.postDelayed(this, RETENTION_BATCH_DELAY);
+			}
+		}
+
+		private void initialize(SQLiteDatabase database)
+		{
+			initialized = true;
+
+			//Keep at least as many entries as history list can display
+			int maxRows = Math.max(MIN_KEPT_ENTRIES, getHistoryDepth());
+			int maxAgeDays = getIntPreference(PebbleNotificationCenter.HISTORY_MAX_AGE, DEFAULT_HISTORY_MAX_AGE);
+			int maxSizeKb = getIntPreference(PebbleNotificationCenter.HISTORY_MAX_SIZE, DEFAULT_HISTORY_MAX_SIZE);
+
+			ageCutoff = maxAgeDays == 0 ? Long.MIN_VALUE : System.currentTimeMillis() - maxAgeDays * 24L * 3600 * 1000;
+
+			Cursor cursor = database.rawQuery("SELECT COUNT(*), TOTAL(" + ROW_SIZE + ") FROM notifications", null);
+			try
+			{
+				cursor.moveToNext();
+				excessRows = cursor.getLong(0) - maxRows;
+				excessBytes = maxSizeKb == 0 ? 0 : cursor.getLong(1) - maxSizeKb * 1024L;
+			}
+			finally
+			{
+				cursor.close();
+			}
+		}
+
+		/**
+		 * @return true if there is nothing left to delete.
+		 */
+		private boolean deleteBatch(SQLiteDatabase database)
+		{
+			StringBuilder ids = new StringBuilder();
+			int numToDelete = 0;
+
+			Cursor cursor = database.rawQuery("SELECT _id, PostTime, " + ROW_SIZE + " FROM notifications ORDER BY PostTime ASC LIMIT " + RETENTION_BATCH_SIZE, null);
+			try
+			{
+				while (cursor.moveToNext())
+				{
+					if (cursor.getLong(1) >= ageCutoff && excessRows <= 0 && excessBytes <= 0)
+						break;
+
+					if (numToDelete > 0)
+						ids.append(',');
+					ids.append(cursor.getLong(0));
+					numToDelete++;
+
+					excessRows--;
+					excessBytes -= cursor.getLong(2);
+				}
+			}
+			finally
+			{
+				cursor.close();
+			}
+
+			if (numToDelete == 0)
+				return true;
+
+			database.beginTransaction();
+			try
+			{
+				deleteEntries(database, ids.toString());
+				database.setTransactionSuccessful();
+			}
+			finally
+			{
+				database.endTransaction();
+			}
+
+			deleted += numToDelete;
+			batches++;
+
+			return numToDelete < RETENTION_BATCH_SIZE;
+		}
+
+		private void finish()
+		{
+			long duration = SystemClock.elapsedRealtime() - startTime;
+			Timber.d("History retention deleted %d entries in %d batches (%d ms)", deleted, batches, duration);
+
+			synchronized (retentionLock)
+			{
+				retentionRunning = false;
+				lastRetentionDeleted = deleted;
+				lastRetentionDuration = duration;
+				totalRetentionDeleted += deleted;
+			}
+		}
+	}
+
+	private static class PendingEntry
+	{
+		private final long time;
+		private final String title;
+		private final String subtitle;
+		private final String text;
+		private final String pkg;
+		private final String key;
+		private final String wearGroup;
+
+		private PendingEntry(long time, PebbleNotification notification)
+		{
+			this.time = time;
+			title = notification.getTitle();
+			subtitle = notification.getSubtitle();
+			text = notification.getText();
+
+			NotificationKey notificationKey = notification.getKey();
+			pkg = notificationKey == null ? null : notificationKey.getPackage();
+			key = notificationKey == null ? null : notificationKey.toString();
+			wearGroup = notification.getWearGroupType() == PebbleNotification.WEAR_GROUP_TYPE_DISABLED ? null : notification.getWearGroupKey();
+		}
 	}
 }
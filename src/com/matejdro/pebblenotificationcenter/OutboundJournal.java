@@ -0,0 +1,557 @@
+package com.matejdro.pebblenotificationcenter;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import com.matejdro.pebblenotificationcenter.util.TextUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import timber.log.Timber;
+
+/**
+ * Append-only file journal of notifications and dismissals that still have to be sent to the watch,
+ * so they can be replayed in order after service is restarted.
+ *
+ * Only one pending notification is kept per NotificationKey (newer one replaces the older). Actions can not be stored
+ * (they contain PendingIntents), so replayed notifications have none.
+ * File is rewritten with only pending entries when most of its records are obsolete.
+ *
+ * File is read on the background thread. Records made before it is loaded are written as usual and applied
+ * on top of the loaded state afterwards, in the same order as they are in the file.
+ */
+public class OutboundJournal
+{
+    private static final String FILE_NAME = "outbound_journal";
+
+    private static final byte RECORD_NOTIFICATION = 1;
+    private static final byte RECORD_NOTIFICATION_DONE = 2;
+    private static final byte RECORD_DISMISSAL = 3;
+    private static final byte RECORD_DISMISSAL_DONE = 4;
+
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+    //Longer text is cut off, so record always fits into MAX_RECORD_SIZE (at most 3 UTF-8 bytes per char)
+    private static final int MAX_TEXT_LENGTH = 16 * 1024;
+    private static final int COMPACTION_MIN_RECORDS = 64;
+    private static final int COMPACTION_RATIO = 4;
+
+    private final File file;
+    private final HandlerThread ioThread;
+    private final Handler ioHandler;
+    private FileOutputStream output;
+
+    //Null until file is loaded
+    private State state;
+    private List<Record> recordsBeforeLoad = new ArrayList<Record>();
+    //Service already has these, so they are not returned as pending work from the file
+    private final HashSet<Integer> notificationsQueuedBeforeLoad = new HashSet<Integer>();
+    private final HashSet<Integer> dismissalsQueuedBeforeLoad = new HashSet<Integer>();
+    private boolean closed;
+
+    /**
+     * Starts reading the journal on the background thread. Callback is run on the handler once pending work is available
+     * (unless journal is closed before that).
+     */
+    public OutboundJournal(Context context, Handler callbackHandler, Runnable loadedCallback)
+    {
+        file = new File(context.getFilesDir(), FILE_NAME);
+
+        ioThread = new HandlerThread("OutboundJournal", Process.THREAD_PRIORITY_BACKGROUND);
+        ioThread.start();
+        ioHandler = new Handler(ioThread.getLooper());
+
+        //Posted first, so file is read before anything is appended to it
+        load(callbackHandler, loadedCallback);
+    }
+
+    private void load(final Handler callbackHandler, final Runnable callback)
+    {
+        ioHandler.post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final State loadedState = read();
+                callbackHandler.post(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        if (closed)
+                            return;
+
+                        for (Record record : recordsBeforeLoad)
+                        {
+                            loadedState.apply(record.type, record.id, record.notification);
+
+                            if (record.type == RECORD_NOTIFICATION)
+                                notificationsQueuedBeforeLoad.add(record.id);
+                            else if (record.type == RECORD_DISMISSAL)
+                                dismissalsQueuedBeforeLoad.add(record.id);
+                        }
+                        loadedState.numOfRecords += recordsBeforeLoad.size();
+
+                        recordsBeforeLoad = null;
+                        state = loadedState;
+
+                        callback.run();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return notifications that were not delivered before the journal was last closed, in the order they were queued.
+     */
+    public List<ProcessedNotification> getPendingNotifications()
+    {
+        List<ProcessedNotification> notifications = new ArrayList<ProcessedNotification>(state.pendingNotifications.size());
+        for (Map.Entry<Integer, PebbleNotification> entry : state.pendingNotifications.entrySet())
+        {
+            if (notificationsQueuedBeforeLoad.contains(entry.getKey()))
+                continue;
+
+            ProcessedNotification notification = new ProcessedNotification();
+            notification.id = entry.getKey();
+            notification.source = entry.getValue();
+            notifications.add(notification);
+        }
+
+        return notifications;
+    }
+
+    public List<Integer> getPendingDismissals()
+    {
+        List<Integer> dismissals = new ArrayList<Integer>(state.pendingDismissals);
+        dismissals.removeAll(dismissalsQueuedBeforeLoad);
+        return dismissals;
+    }
+
+    public void notificationQueued(ProcessedNotification notification)
+    {
+        if (notification.source.getKey() == null)
+            return;
+
+        record(RECORD_NOTIFICATION, notification.id, notification.source);
+    }
+
+    /**
+     * Marks notification as delivered or no longer needed.
+     */
+    public void notificationDone(int id)
+    {
+        record(RECORD_NOTIFICATION_DONE, id, null);
+    }
+
+    public void dismissalQueued(int id)
+    {
+        record(RECORD_DISMISSAL, id, null);
+    }
+
+    public void dismissalDone(int id)
+    {
+        record(RECORD_DISMISSAL_DONE, id, null);
+    }
+
+    public void close()
+    {
+        closed = true;
+        ioHandler.post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                closeOutput();
+                ioThread.quit();
+            }
+        });
+    }
+
+    private void record(byte type, int id, PebbleNotification notification)
+    {
+        if (state == null)
+        {
+            //Whether record changes anything is only known once file is loaded, so it is always written
+            recordsBeforeLoad.add(new Record(type, id, notification));
+        }
+        else if (!state.apply(type, id, notification))
+        {
+            return;
+        }
+
+        append(type, id, notification);
+    }
+
+    private void append(byte type, int id, PebbleNotification notification)
+    {
+        final byte[] record;
+        try
+        {
+            record = serializeRecord(type, id, notification);
+        } catch (IOException e)
+        {
+            Timber.w("Cannot journal record of notification %d: %s", id, e.getMessage());
+            return;
+        }
+
+        if (state != null && ++state.numOfRecords >= COMPACTION_MIN_RECORDS && state.numOfRecords > state.size() * COMPACTION_RATIO)
+        {
+            compact();
+            return;
+        }
+
+        ioHandler.post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                write(record, true);
+            }
+        });
+    }
+
+    private void compact()
+    {
+        ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        for (Map.Entry<Integer, PebbleNotification> entry : state.pendingNotifications.entrySet())
+        {
+            try
+            {
+                contents.write(serializeRecord(RECORD_NOTIFICATION, entry.getKey(), entry.getValue()));
+            } catch (IOException e)
+            {
+                Timber.w("Cannot journal record of notification %d: %s", entry.getKey(), e.getMessage());
+            }
+        }
+        for (Integer id : state.pendingDismissals)
+        {
+            try
+            {
+                contents.write(serializeRecord(RECORD_DISMISSAL, id, null));
+            } catch (IOException e)
+            {
+                Timber.w("Cannot journal record of dismissal %d: %s", id, e.getMessage());
+            }
+        }
+
+        state.numOfRecords = state.size();
+
+        final byte[] data = contents.toByteArray();
+        ioHandler.post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                write(data, false);
+            }
+        });
+    }
+
+    /**
+     * @param append true to append data to the end of the journal, false to replace the journal with it.
+     */
+    private void write(byte[] data, boolean append)
+    {
+        try
+        {
+            if (!append)
+            {
+                closeOutput();
+
+                File tempFile = new File(file.getPath() + ".tmp");
+                FileOutputStream tempOutput = new FileOutputStream(tempFile);
+                try
+                {
+                    tempOutput.write(data);
+                    tempOutput.getFD().sync();
+                }
+                finally
+                {
+                    tempOutput.close();
+                }
+
+                if (!tempFile.renameTo(file))
+                    throw new IOException("Cannot replace " + file);
+
+                return;
+            }
+
+            if (output == null)
+                output = new FileOutputStream(file, true);
+
+            output.write(data);
+        } catch (IOException e)
+        {
+            Timber.w("Failed to write outbound journal: %s", e.getMessage());
+            closeOutput();
+        }
+    }
+
+    private void closeOutput()
+    {
+        if (output == null)
+            return;
+
+        try
+        {
+            output.close();
+        } catch (IOException e)
+        {
+        }
+
+        output = null;
+    }
+
+    /**
+     * Runs on the io thread.
+     */
+    private State read()
+    {
+        State state = new State();
+        if (!file.exists())
+            return state;
+
+        DataInputStream input = null;
+        try
+        {
+            input = new DataInputStream(new FileInputStream(file));
+            while (true)
+            {
+                byte type;
+                try
+                {
+                    type = input.readByte();
+                } catch (EOFException e)
+                {
+                    break;
+                }
+
+                int length = input.readInt();
+                if (length < 4)
+                    throw new IOException("Invalid record length " + length);
+
+                if (length > MAX_RECORD_SIZE)
+                {
+                    //Writer does not produce such records, but one bad record should not drop everything after it
+                    Timber.w("Skipping outbound journal record with length %d", length);
+                    if (input.skipBytes(length) < length)
+                        throw new EOFException("Record cut off");
+
+                    state.numOfRecords++;
+                    continue;
+                }
+
+                byte[] payload = new byte[length];
+                input.readFully(payload);
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                int id = record.readInt();
+                state.apply(type, id, type == RECORD_NOTIFICATION ? readNotification(record) : null);
+                state.numOfRecords++;
+            }
+        } catch (IOException e)
+        {
+            //Last record was probably cut off when process was killed. Everything before it is still valid.
+            Timber.w("Outbound journal ends with damaged record: %s", e.getMessage());
+        } catch (RuntimeException e)
+        {
+            Timber.w("Outbound journal is damaged: %s", e.getMessage());
+        }
+        finally
+        {
+            if (input != null)
+            {
+                try
+                {
+                    input.close();
+                } catch (IOException e)
+                {
+                }
+            }
+        }
+
+        Timber.d("Outbound journal loaded: %d notifications, %d dismissals", state.pendingNotifications.size(), state.pendingDismissals.size());
+        return state;
+    }
+
+    private static byte[] serializeRecord(byte type, int id, PebbleNotification notification) throws IOException
+    {
+        ByteArrayOutputStream payloadStream = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadStream);
+        payload.writeInt(id);
+        if (notification != null)
+            writeNotification(payload, notification);
+
+        if (payloadStream.size() > MAX_RECORD_SIZE)
+            throw new IOException("Record too large (" + payloadStream.size() + " bytes)");
+
+        ByteArrayOutputStream recordStream = new ByteArrayOutputStream(payloadStream.size() + 5);
+        DataOutputStream record = new DataOutputStream(recordStream);
+        record.writeByte(type);
+        record.writeInt(payloadStream.size());
+        payloadStream.writeTo(record);
+
+        return recordStream.toByteArray();
+    }
+
+    private static void writeNotification(DataOutputStream output, PebbleNotification notification) throws IOException
+    {
+        NotificationKey key = notification.getKey();
+        writeString(output, key.getLolipopKey());
+        writeString(output, key.getPackage());
+        output.writeBoolean(key.getAndroidId() != null);
+        if (key.getAndroidId() != null)
+            output.writeInt(key.getAndroidId());
+        writeString(output, key.getTag());
+
+        writeString(output, notification.getTitle());
+        writeString(output, notification.getSubtitle());
+        String text = notification.getText();
+        if (text != null && text.length() > MAX_TEXT_LENGTH)
+        {
+            int end = Character.isHighSurrogate(text.charAt(MAX_TEXT_LENGTH - 1)) ? MAX_TEXT_LENGTH - 1 : MAX_TEXT_LENGTH;
+            text = text.substring(0, end);
+        }
+        writeString(output, text);
+        output.writeLong(notification.getPostTime());
+
+        byte flags = 0;
+        flags |= notification.isDismissable() ? 0x01 : 0;
+        flags |= notification.isHistoryDisabled() ? 0x02 : 0;
+        flags |= notification.shouldForceActionMenu() ? 0x04 : 0;
+        flags |= notification.shouldNCForceSwitchToThisNotification() ? 0x08 : 0;
+        flags |= notification.shouldScrollToEnd() ? 0x10 : 0;
+        output.writeByte(flags);
+
+        writeString(output, notification.getWearGroupKey());
+        output.writeInt(notification.getWearGroupType());
+    }
+
+    private static PebbleNotification readNotification(DataInputStream input) throws IOException
+    {
+        String lolipopKey = readString(input);
+        String pkg = readString(input);
+        Integer androidId = input.readBoolean() ? input.readInt() : null;
+        String tag = readString(input);
+        NotificationKey key = lolipopKey != null ? new NotificationKey(lolipopKey) : new NotificationKey(pkg, androidId, tag);
+
+        String title = readString(input);
+        String subtitle = readString(input);
+        String text = readString(input);
+
+        PebbleNotification notification = new PebbleNotification(title, text, key);
+        notification.setSubtitle(subtitle);
+        notification.setPostTime(input.readLong());
+
+        byte flags = input.readByte();
+        notification.setDismissable((flags & 0x01) != 0);
+        notification.setNoHistory((flags & 0x02) != 0);
+        notification.setForceActionMenu((flags & 0x04) != 0);
+        notification.setForceSwitch((flags & 0x08) != 0);
+        notification.setScrollToEnd((flags & 0x10) != 0);
+
+        notification.setWearGroupKey(readString(input));
+        notification.setWearGroupType(input.readInt());
+
+        return notification;
+    }
+
+    /**
+     * Notifications and dismissals that are still pending after applying records in order.
+     */
+    private static class State
+    {
+        private final LinkedHashMap<Integer, PebbleNotification> pendingNotifications = new LinkedHashMap<Integer, PebbleNotification>();
+        private final HashMap<String, Integer> idsByKey = new HashMap<String, Integer>();
+        private final LinkedHashSet<Integer> pendingDismissals = new LinkedHashSet<Integer>();
+        private int numOfRecords;
+
+        /**
+         * @return true if record changed anything.
+         */
+        private boolean apply(byte type, int id, PebbleNotification notification)
+        {
+            switch (type)
+            {
+                case RECORD_NOTIFICATION:
+                    Integer previousId = idsByKey.put(notification.getKey().toString(), id);
+                    if (previousId != null)
+                        pendingNotifications.remove(previousId);
+
+                    pendingNotifications.put(id, notification);
+                    return true;
+                case RECORD_NOTIFICATION_DONE:
+                    PebbleNotification doneNotification = pendingNotifications.remove(id);
+                    if (doneNotification == null)
+                        return false;
+
+                    idsByKey.remove(doneNotification.getKey().toString());
+                    return true;
+                case RECORD_DISMISSAL:
+                    return pendingDismissals.add(id);
+                case RECORD_DISMISSAL_DONE:
+                    return pendingDismissals.remove(id);
+            }
+
+            return false;
+        }
+
+        private int size()
+        {
+            return pendingNotifications.size() + pendingDismissals.size();
+        }
+    }
+
+    private static class Record
+    {
+        private final byte type;
+        private final int id;
+        private final PebbleNotification notification;
+
+        private Record(byte type, int id, PebbleNotification notification)
+        {
+            this.type = type;
+            this.id = id;
+            this.notification = notification;
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException
+    {
+        if (string == null)
+        {
+            output.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = string.getBytes(TextUtil.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException
+    {
+        int length = input.readInt();
+        if (length < 0)
+            return null;
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, TextUtil.UTF_8);
+    }
+}
@@ -4,7 +4,6 @@ import android.content.Context;
 import android.os.Parcel;
 import android.os.Parcelable;
 import com.matejdro.pebblenotificationcenter.appsetting.AppSettingStorage;
-import com.matejdro.pebblenotificationcenter.appsetting.SharedPreferencesAppStorage;
 import com.matejdro.pebblenotificationcenter.notifications.actions.NotificationAction;
 import java.util.ArrayList;
 
@@ -104,12 +103,7 @@ public class PebbleNotification implements Parcelable
     public AppSettingStorage getSettingStorage(Context context)
     {
         if (settingStorage == null)
-        {
-            if (key.getPackage() == null)
-                settingStorage = PebbleNotificationCenter.getInMemorySettings().getDefaultSettingsStorage();
-            else
-                settingStorage = new SharedPreferencesAppStorage(context, key.getPackage(), PebbleNotificationCenter.getInMemorySettings().getDefaultSettingsStorage(), true);
-        }
+            settingStorage = PebbleNotificationCenter.getInMemorySettings().getAppSettingStorage(key.getPackage());
 
         return settingStorage;
     }
@@ -2,7 +2,10 @@ package com.matejdro.pebblenotificationcenter;
 
 import android.content.pm.ApplicationInfo;
 import com.crashlytics.android.Crashlytics;
+import com.matejdro.pebblenotificationcenter.pebble.DeveloperConnectionManager;
+import com.matejdro.pebblenotificationcenter.pebble.PebbleDeveloperConnection;
 import com.matejdro.pebblenotificationcenter.util.SettingsMemoryStorage;
+import java.net.URI;
 import timber.log.Timber;
 import timber.log.Timber.DebugTree;
 
@@ -23,6 +26,11 @@ public class PebbleNotificationCenter extends android.app.Application {
     public static final String NO_NOTIFY_VIBRATE = "noNotificationsSilent";
     public static final String INVERT_COLORS = "invertColors";
     public static final String NOTIFICATIONS_DISABLED = "noNotifications";
+    public static final String APP_MESSAGE_WINDOW = "appMessageWindow";
+    public static final String HISTORY_DEPTH = "historyDepth";
+    public static final String COMPRESS_HISTORY = "compressHistory";
+    public static final String HISTORY_MAX_AGE = "historyMaxAge";
+    public static final String HISTORY_MAX_SIZE = "historyMaxSize";
 
     public static final String LATITUDE = "latitude";
     public static final String LONGITUDE = "longitude";
@@ -30,6 +38,7 @@ public class PebbleNotificationCenter extends android.app.Application {
     
     
     private static SettingsMemoryStorage settingsMemoryStorage;
+    private static DeveloperConnectionManager developerConnectionManager;
     
     @Override public void onCreate() {
         super.onCreate();
@@ -48,4 +57,15 @@ public class PebbleNotificationCenter extends android.app.Application {
 	{		
 		return settingsMemoryStorage;
 	}
+
+    /**
+     * @return connection manager shared by the whole process, so only one developer connection is open at the time.
+     */
+    public static synchronized DeveloperConnectionManager getDeveloperConnectionManager()
+    {
+        if (developerConnectionManager == null)
+            developerConnectionManager = new DeveloperConnectionManager(URI.create(PebbleDeveloperConnection.DEFAULT_URI));
+
+        return developerConnectionManager;
+    }
 }
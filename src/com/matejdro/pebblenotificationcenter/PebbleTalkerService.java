@@ -6,11 +6,11 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
 import android.media.AudioManager;
+import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.PowerManager;
 import android.preference.PreferenceManager;
-import android.util.SparseArray;
 import com.crashlytics.android.Crashlytics;
 import com.getpebble.android.kit.PebbleKit;
 import com.getpebble.android.kit.util.PebbleDictionary;
@@ -18,7 +18,6 @@ import com.luckycatlabs.sunrisesunset.SunriseSunsetCalculator;
 import com.matejdro.pebblenotificationcenter.appsetting.AppSetting;
 import com.matejdro.pebblenotificationcenter.appsetting.AppSettingStorage;
 import com.matejdro.pebblenotificationcenter.appsetting.DefaultAppSettingsStorage;
-import com.matejdro.pebblenotificationcenter.appsetting.SharedPreferencesAppStorage;
 import com.matejdro.pebblenotificationcenter.lists.ActiveNotificationsAdapter;
 import com.matejdro.pebblenotificationcenter.lists.NotificationHistoryAdapter;
 import com.matejdro.pebblenotificationcenter.lists.NotificationListAdapter;
@@ -28,11 +27,12 @@ import com.matejdro.pebblenotificationcenter.location.LocationLookup;
 import com.matejdro.pebblenotificationcenter.notifications.JellybeanNotificationListener;
 import com.matejdro.pebblenotificationcenter.notifications.NotificationHandler;
 import com.matejdro.pebblenotificationcenter.notifications.actions.NotificationAction;
+import com.matejdro.pebblenotificationcenter.pebble.AppMessageSender;
+import com.matejdro.pebblenotificationcenter.pebble.DeveloperConnectionManager;
 import com.matejdro.pebblenotificationcenter.pebble.PebbleDeveloperConnection;
 import com.matejdro.pebblenotificationcenter.pebble.WatchappHandler;
 import com.matejdro.pebblenotificationcenter.util.PreferencesUtil;
 import com.matejdro.pebblenotificationcenter.util.TextUtil;
-import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
@@ -42,7 +42,6 @@ import java.util.List;
 import java.util.Queue;
 import java.util.Random;
 import java.util.UUID;
-import org.json.JSONException;
 import timber.log.Timber;
 
 public class PebbleTalkerService extends Service
@@ -52,23 +51,32 @@ public class PebbleTalkerService extends Service
     public static final UUID MAIN_MENU_UUID = UUID.fromString("dec0424c-0625-4878-b1f2-147e57e83688");
 
     public static final int TEXT_LIMIT = 900;
+    private static final int TEXT_CHUNK_SIZE = 80;
 
     private SharedPreferences settings;
     private DefaultAppSettingsStorage defaultSettingsStorage;
     private NotificationHistoryStorage historyDb;
     private Handler handler;
 
-    private PebbleDeveloperConnection devConn;
+    private DeveloperConnectionManager devConnManager;
+    private DeveloperConnectionManager.ConnectedListener devConnListener;
     private UUID previousUUID;
 
+    private AppMessageSender appMessageSender;
+    private int watchappCapabilities = 0;
+    //0 when watchapp did not report its inbox size
+    private int watchappInboxSize = 0;
+
     private NotificationListAdapter listHandler;
 
     private boolean commBusy = false;
+    private int overlappedDismissals = 0;
     private Queue<Integer> notificationRemovalQueue = new LinkedList<Integer>();
 
     ProcessedNotification curSendingNotification;
     private Queue<ProcessedNotification> sendingQueue = new LinkedList<ProcessedNotification>();
-    private SparseArray<ProcessedNotification> sentNotifications = new SparseArray<ProcessedNotification>();
+    private SentNotificationStore sentNotifications = new SentNotificationStore();
+    private OutboundJournal outboundJournal;
     private HashMap<String, Long> lastAppVibration = new HashMap<String, Long>();
 
     private LocationLookup locationLookup;
@@ -83,11 +91,10 @@ public class PebbleTalkerService extends Service
     @Override
     public void onDestroy()
     {
-        if (devConn != null)
-        {
-            devConn.close();
-        }
+        devConnManager.removeConnectedListener(devConnListener);
         historyDb.close();
+        outboundJournal.close();
+        appMessageSender.stop();
         handler.removeCallbacksAndMessages(null);
         locationLookup.close();
     }
@@ -100,36 +107,55 @@ public class PebbleTalkerService extends Service
         defaultSettingsStorage = new DefaultAppSettingsStorage(settings, settings.edit());
         historyDb = new NotificationHistoryStorage(this);
 
+        int windowSize = AppMessageSender.DEFAULT_WINDOW_SIZE;
         try
         {
-            devConn = new PebbleDeveloperConnection();
-            devConn.connectBlocking();
-        } catch (InterruptedException e)
-        {
-        } catch (URISyntaxException e)
+            windowSize = Integer.parseInt(settings.getString(PebbleNotificationCenter.APP_MESSAGE_WINDOW, Integer.toString(windowSize)));
+        } catch (NumberFormatException e)
         {
         }
 
+        appMessageSender = new AppMessageSender(this, DataReceiver.pebbleAppUUID, windowSize);
+        appMessageSender.setDeliveryListener(new AppMessageSender.DeliveryListener()
+        {
+            @Override
+            public void onDeliveryFailed(PebbleDictionary data)
+            {
+                messageDeliveryFailed(data);
+            }
+        });
+        appMessageSender.start();
+
+        devConnManager = PebbleNotificationCenter.getDeveloperConnectionManager();
+        devConnListener = new DeveloperConnectionManager.ConnectedListener()
+        {
+            @Override
+            public void onDeveloperConnectionConnected(PebbleDeveloperConnection connection)
+            {
+                developerConnectionOpened(connection);
+            }
+        };
+        devConnManager.addConnectedListener(devConnListener);
+        devConnManager.ensureConnected();
+
         locationLookup = new LocationLookup(this.getApplicationContext());
         locationLookup.lookup();
         super.onCreate();
+
+        outboundJournal = new OutboundJournal(this, handler, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                restorePendingWork();
+            }
+        });
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId)
     {
-        if (devConn == null || devConn.isClosed())
-        {
-            try
-            {
-                devConn = new PebbleDeveloperConnection();
-                devConn.connectBlocking();
-            } catch (InterruptedException e)
-            {
-            } catch (URISyntaxException e)
-            {
-            }
-        }
+        devConnManager.ensureConnected();
 
         if (intent != null)
         {
@@ -139,8 +165,8 @@ public class PebbleTalkerService extends Service
                 processNotification(notification);
             } else if (intent.hasExtra("packet"))
             {
-                String jsonPacket = intent.getStringExtra("packet");
-                receivedPacketFromPebble(jsonPacket);
+                byte[] packet = intent.getByteArrayExtra("packet");
+                receivedPacketFromPebble(packet);
             }
             else if (intent.hasExtra("dismissUpwardsKey"))
             {
@@ -214,8 +240,68 @@ public class PebbleTalkerService extends Service
         data.addString(5, notification.source.getTitle());
         data.addString(6, notification.source.getSubtitle());
 
-        PebbleKit.sendDataToPebble(this, DataReceiver.pebbleAppUUID, data);
+        sendToPebble(data);
         commStarted();
+
+        if (isWatchappCapable(WatchappHandler.CAPABILITY_TEXT_PUSH))
+            pushTextChunks(notification);
+    }
+
+    /**
+     * Sends all text chunks right after the notification header, packing as many of them into one message as watchapp inbox can hold.
+     * Watchapp can still request any missing chunk with packet 1.
+     */
+    private void pushTextChunks(ProcessedNotification notification)
+    {
+        //Dictionary header (1 byte), four tuple headers (7 bytes each) and values of packet id, notification id and chunk index
+        int capacity = getWatchappInboxSize() - 1 - 4 * 7 - 1 - 4 - 1;
+        if (capacity < TEXT_CHUNK_SIZE + 1)
+        {
+            //Even single chunk would be rejected. Watchapp will pull chunks one by one instead.
+            Timber.d("Watchapp inbox too small for pushing text (%d bytes)", getWatchappInboxSize());
+            return;
+        }
+
+        int firstChunk = 0;
+        int batchSize = 0;
+        for (int i = 0; i < notification.textChunks.size(); i++)
+        {
+            int chunkSize = notification.textChunks.get(i).length + 1;
+            if (batchSize > 0 && batchSize + chunkSize > capacity)
+            {
+                sendTextBatch(notification, firstChunk, i, batchSize);
+                firstChunk = i;
+                batchSize = 0;
+            }
+
+            batchSize += chunkSize;
+        }
+
+        if (batchSize > 0)
+            sendTextBatch(notification, firstChunk, notification.textChunks.size(), batchSize);
+    }
+
+    private void sendTextBatch(ProcessedNotification notification, int from, int to, int size)
+    {
+        byte[] textData = new byte[size];
+        int position = 0;
+        for (int i = from; i < to; i++)
+        {
+            byte[] chunk = notification.textChunks.get(i);
+            System.arraycopy(chunk, 0, textData, position, chunk.length);
+            position += chunk.length;
+            textData[position++] = 0;
+        }
+
+        PebbleDictionary data = new PebbleDictionary();
+        data.addUint8(0, (byte) 6);
+        data.addInt32(1, notification.id);
+        data.addUint8(2, (byte) from);
+        data.addBytes(3, textData);
+
+        Timber.d("Pushing text chunks %d - %d", from, to - 1);
+
+        sendToPebble(data);
     }
 
     public void dismissOnPebble(Integer id, boolean dontClose)
@@ -229,10 +315,78 @@ public class PebbleTalkerService extends Service
         if (dontClose || !sendingQueue.isEmpty())
             data.addUint8(2, (byte) 1);
 
-        PebbleKit.sendDataToPebble(this, DataReceiver.pebbleAppUUID, data);
+        sendToPebble(data);
         commStarted();
     }
 
+    /**
+     * Sends dismiss packet while other transfer is still in progress instead of waiting for communication to become idle.
+     */
+    private void dismissOnPebbleOverlapped(Integer id)
+    {
+        Timber.d("Dismissing upwards (overlapped)...");
+
+        PebbleDictionary data = new PebbleDictionary();
+
+        data.addUint8(0, (byte) 4);
+        data.addInt32(1, id);
+        data.addUint8(2, (byte) 1);
+
+        //ACK of this dismissal must not mark communication as idle, transfer in progress will do that.
+        overlappedDismissals++;
+
+        sendToPebble(data);
+    }
+
+    /**
+     * Sends data to the watchapp through the send window.
+     */
+    public void sendToPebble(PebbleDictionary data)
+    {
+        appMessageSender.send(data);
+    }
+
+    /**
+     * Watchapp did not receive message even after retries. Waiting messages of the same notification (header, text)
+     * would be meaningless without it, so they are dropped. Everything else (dismissals, other notifications) is still sent.
+     * Notification that was being sent stays pending and is sent again when watchapp is opened.
+     */
+    private void messageDeliveryFailed(PebbleDictionary data)
+    {
+        int packetId = data.getUnsignedInteger(0).intValue();
+        if (packetId == 4)
+        {
+            //Watch will never confirm this dismissal
+            if (overlappedDismissals > 0)
+                overlappedDismissals--;
+            return;
+        }
+
+        if (!isNotificationPacket(packetId))
+            return;
+
+        final int notificationId = data.getInteger(1).intValue();
+        Timber.w("Message of notification %d could not be delivered to the watchapp, dropping its other messages", notificationId);
+
+        appMessageSender.removeWaiting(new AppMessageSender.MessageFilter()
+        {
+            @Override
+            public boolean matches(PebbleDictionary data)
+            {
+                return isNotificationPacket(data.getUnsignedInteger(0).intValue()) && data.getInteger(1).intValue() == notificationId;
+            }
+        });
+    }
+
+    /**
+     * @return true if packet carries header or text of one notification with its ID at key 1.
+     */
+    private static boolean isNotificationPacket(int packetId)
+    {
+        //Packet 5 is not included, since action list uses it for list items without notification ID
+        return packetId == 0 || packetId == 1 || packetId == 6;
+    }
+
     public void processDismissUpwards(NotificationKey key, boolean dontClose)
     {
         Timber.d("got dismiss: " + key);
@@ -240,32 +394,27 @@ public class PebbleTalkerService extends Service
         if (key.getAndroidId() == null)
             return;
 
-        AppSettingStorage settingsStorage;
-        if (key.getPackage() == null)
-            settingsStorage = defaultSettingsStorage;
-        else
-            settingsStorage = new SharedPreferencesAppStorage(this, key.getPackage(), defaultSettingsStorage, true);
+        AppSettingStorage settingsStorage = PebbleNotificationCenter.getInMemorySettings().getAppSettingStorage(key.getPackage());
 
         boolean syncDismissUp = settingsStorage.getBoolean(AppSetting.DISMISS_UPRWADS);
         if (!syncDismissUp)
             return;
 
-        for (int i = 0; i < sentNotifications.size(); i++)
+        List<ProcessedNotification> dismissedNotifications = sentNotifications.getByKey(key);
+        for (ProcessedNotification notification : dismissedNotifications)
         {
-            ProcessedNotification notification = sentNotifications.valueAt(i);
-
-            if (!notification.source.isListNotification() && notification.source.isSameNotification(key))
+            Timber.tag("NC Upwards debug");
+            Timber.d("	rem notifications check: %b %d", commBusy, sendingQueue.size());
+            if (commBusy)
             {
-                Timber.tag("NC Upwards debug");
-                Timber.d("	rem notifications check: %b %d", commBusy, sendingQueue.size());
-                if (commBusy)
-                {
-                    notificationRemovalQueue.add(notification.id);
-                    continue;
-                }
-
-                dismissOnPebble(notification.id, dontClose);
+                if (appMessageSender.hasFreeSlot())
+                    dismissOnPebbleOverlapped(notification.id);
+                else
+                    queueDismissal(notification.id);
+                continue;
             }
+
+            dismissOnPebble(notification.id, dontClose);
         }
 
         //Remove now dismissed notification from queue so it does not spam Pebble later
@@ -277,17 +426,12 @@ public class PebbleTalkerService extends Service
             if (!notification.source.isListNotification() && notification.source.isSameNotification(key))
             {
                 iterator.remove();
+                outboundJournal.notificationDone(notification.id);
             }
         }
-        for (int i = 0; i < sentNotifications.size(); i++)
+        for (ProcessedNotification notification : dismissedNotifications)
         {
-            ProcessedNotification notification = sentNotifications.valueAt(i);
-
-            if (!notification.source.isListNotification() && notification.source.isSameNotification(key))
-            {
-                sentNotifications.removeAt(i);
-                i--;
-            }
+            sentNotifications.remove(notification.id);
         }
     }
 
@@ -295,32 +439,27 @@ public class PebbleTalkerService extends Service
     {
         Timber.d("got package dismiss: " + pkg );
 
-        AppSettingStorage settingsStorage;
-        if (pkg == null)
-            settingsStorage = defaultSettingsStorage;
-        else
-            settingsStorage = new SharedPreferencesAppStorage(this, pkg, defaultSettingsStorage, true);
+        AppSettingStorage settingsStorage = PebbleNotificationCenter.getInMemorySettings().getAppSettingStorage(pkg);
 
         boolean syncDismissUp = settingsStorage.getBoolean(AppSetting.DISMISS_UPRWADS);
         if (!syncDismissUp)
             return;
 
-        for (int i = 0; i < sentNotifications.size(); i++)
+        List<ProcessedNotification> dismissedNotifications = sentNotifications.getByPackage(pkg);
+        for (ProcessedNotification notification : dismissedNotifications)
         {
-            ProcessedNotification notification = sentNotifications.valueAt(i);
-
-            if (!notification.source.isListNotification() && notification.source.getKey().getPackage().equals(pkg))
+            Timber.tag("NC Upwards debug");
+            Timber.d("	rem notifications check: %b %d", commBusy, sendingQueue.size());
+            if (commBusy)
             {
-                Timber.tag("NC Upwards debug");
-                Timber.d("	rem notifications check: %b %d", commBusy, sendingQueue.size());
-                if (commBusy)
-                {
-                    notificationRemovalQueue.add(notification.id);
-                    continue;
-                }
-
-                dismissOnPebble(notification.id, dontClose);
+                if (appMessageSender.hasFreeSlot())
+                    dismissOnPebbleOverlapped(notification.id);
+                else
+                    queueDismissal(notification.id);
+                continue;
             }
+
+            dismissOnPebble(notification.id, dontClose);
         }
 
         //Remove now dismissed notification from queue so it does not spam Pebble later
@@ -332,17 +471,12 @@ public class PebbleTalkerService extends Service
             if (!notification.source.isListNotification() && notification.source.getKey().getPackage().equals(pkg))
             {
                 iterator.remove();
+                outboundJournal.notificationDone(notification.id);
             }
         }
-        for (int i = 0; i < sentNotifications.size(); i++)
+        for (ProcessedNotification notification : dismissedNotifications)
         {
-            ProcessedNotification notification = sentNotifications.valueAt(i);
-
-            if (!notification.source.isListNotification() && notification.source.getKey().getPackage().equals(pkg))
-            {
-                sentNotifications.removeAt(i);
-                i--;
-            }
+            sentNotifications.remove(notification.id);
         }
     }
 
@@ -352,6 +486,13 @@ public class PebbleTalkerService extends Service
         Timber.tag("NC Upwards debug");
         Timber.d("	dismiss success: %b %d", data.contains(2), notificationRemovalQueue.size());
 
+        if (overlappedDismissals > 0)
+        {
+            overlappedDismissals--;
+            if (commBusy)
+                return;
+        }
+
         if (data.contains(2))
         {
             closeApp();
@@ -401,7 +542,7 @@ public class PebbleTalkerService extends Service
                 settingStorage.getBoolean(AppSetting.SAVE_TO_HISTORY) &&
                 canDisplayWearGroupNotification(notification.source, settingStorage))
         {
-            historyDb.storeNotification(System.currentTimeMillis(), notificationSource.getTitle(), notificationSource.getSubtitle(), notificationSource.getText());
+            historyDb.storeNotification(System.currentTimeMillis(), notificationSource);
         }
 
         if (!notificationSource.isListNotification())
@@ -478,7 +619,9 @@ public class PebbleTalkerService extends Service
                 String nativeTitle = notificationSource.getTitle();
                 String nativeText = notificationSource.getSubtitle() + "\n\n" + notificationSource.getText();
 
-                devConn.sendNotification(nativeTitle, nativeText);
+                PebbleDeveloperConnection devConn = devConnManager.getConnection();
+                if (devConn != null)
+                    devConn.sendNotification(nativeTitle, nativeText);
                 return;
             } else if (pebbleAppMode == 2) //No notification
             {
@@ -493,27 +636,25 @@ public class PebbleTalkerService extends Service
         {
             notification.id = rnd.nextInt();
         }
-        while (sentNotifications.get(notification.id) != null);
+        while (sentNotifications.contains(notification.id));
 
         if (!notification.source.isListNotification() && !canDisplayWearGroupNotification(notification.source, settingStorage))
         {
-            sentNotifications.put(notification.id, notification);
+            sentNotifications.put(notification);
             Timber.d("notify failed - group");
             return;
         }
 
         processDismissUpwards(notificationSource.getKey(), true);
+        if (!notificationSource.isListNotification())
+            removeQueuedVersions(notificationSource.getKey());
 
-        sentNotifications.put(notification.id, notification);
-
-        String text = notificationSource.getText();
+        notification.textChunks = TextUtil.splitToUtf8Chunks(notificationSource.getText(), TEXT_CHUNK_SIZE);
+        //Pinned until transfer is completed, so it can not be evicted while watch still needs it
+        sentNotifications.put(notification, true);
 
-        while (text.length() > 0)
-        {
-            String chunk = TextUtil.trimString(text, 80, false);
-            notification.textChunks.add(chunk);
-            text = text.substring(chunk.length());
-        }
+        if (!notificationSource.isListNotification())
+            outboundJournal.notificationQueued(notification);
 
         openApp();
 
@@ -525,9 +666,64 @@ public class PebbleTalkerService extends Service
             send(notification);
     }
 
+    /**
+     * Drops older versions of the notification that are still waiting in the queue, so only the latest one is sent
+     * (also when app does not sync dismissals).
+     */
+    private void removeQueuedVersions(NotificationKey key)
+    {
+        if (key == null)
+            return;
+
+        Iterator<ProcessedNotification> iterator = sendingQueue.iterator();
+        while (iterator.hasNext())
+        {
+            ProcessedNotification queued = iterator.next();
+            if (!queued.source.isListNotification() && queued.source.isSameNotification(key))
+            {
+                Timber.d("Dropping queued older version of notification %d", queued.id);
+
+                iterator.remove();
+                sentNotifications.remove(queued.id);
+                outboundJournal.notificationDone(queued.id);
+            }
+        }
+    }
+
+    /**
+     * Called on the manager thread. Waits for the running app (connection requests it when opened) off the main thread, so
+     * first notification after connecting already knows which app was running.
+     */
+    private void developerConnectionOpened(final PebbleDeveloperConnection connection)
+    {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (connection.getCurrentRunningApp() == null)
+                    return;
+
+                handler.post(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        updateCurrentlyRunningApp();
+                    }
+                });
+            }
+        });
+    }
+
     private void updateCurrentlyRunningApp()
     {
-        UUID currentApp = devConn.getCurrentRunningApp();
+        PebbleDeveloperConnection devConn = devConnManager.getConnection();
+        if (devConn == null)
+            return;
+
+        //Cached value is used, so notifications do not have to wait for the watch to answer
+        UUID currentApp = devConn.getCachedRunningApp();
 
         if (currentApp != null && !(currentApp.getLeastSignificantBits() == 0 && currentApp.getMostSignificantBits() == 0) && (!currentApp.equals(DataReceiver.pebbleAppUUID) || previousUUID == null) && !currentApp.equals(UNKNOWN_UUID))
         {
@@ -544,6 +740,7 @@ public class PebbleTalkerService extends Service
     {
         Timber.d("CloseApp " + previousUUID);
         commBusy = false;
+        overlappedDismissals = 0;
 
         //startAppOnPebble seems to fail sometimes so I fallback to regular closing if it fails 2 times.
         if (settings.getBoolean(PebbleNotificationCenter.CLOSE_TO_LAST_APP, false) && previousUUID != null && !previousUUID.equals(DataReceiver.pebbleAppUUID) && !previousUUID.equals(MAIN_MENU_UUID) && closingAttempts < 3)
@@ -559,8 +756,14 @@ public class PebbleTalkerService extends Service
         closingAttempts++;
     }
 
-    private void appOpened()
+    private void appOpened(PebbleDictionary data)
     {
+        overlappedDismissals = 0;
+
+        //Older watchapps do not send anything in init packet and only support pulling text with packet 1
+        watchappCapabilities = data.contains(1) ? data.getUnsignedInteger(1).intValue() : 0;
+        watchappInboxSize = data.contains(2) ? data.getUnsignedInteger(2).intValue() : 0;
+
         sendConfig(sendingQueue.size() > 0 || curSendingNotification != null);
     }
 
@@ -594,17 +797,11 @@ public class PebbleTalkerService extends Service
         if (notificationRemovalQueue.size() > 0)
         {
             Integer nextRemovalNotifiaction = notificationRemovalQueue.poll();
+            outboundJournal.dismissalDone(nextRemovalNotifiaction);
             dismissOnPebble(nextRemovalNotifiaction, false);
             return true;
         }
 
-        //Clean up excess history entries every day
-        long lastDbCleanup = settings.getLong("lastCleanup", 0);
-        if (System.currentTimeMillis() - lastDbCleanup > 1000 * 3600 * 24)
-        {
-            historyDb.cleanDatabase();
-        }
-
         commBusy = false;
 
         return false;
@@ -620,6 +817,19 @@ public class PebbleTalkerService extends Service
         commBusy = true;
     }
 
+    public boolean isWatchappCapable(int capability)
+    {
+        return (watchappCapabilities & capability) != 0;
+    }
+
+    /**
+     * @return inbox size reported by the watchapp or default one if watchapp did not report it.
+     */
+    public int getWatchappInboxSize()
+    {
+        return watchappInboxSize > 0 ? watchappInboxSize : WatchappHandler.DEFAULT_INBOX_SIZE;
+    }
+
     private void menuPicked(PebbleDictionary data)
     {
         int index = data.getUnsignedInteger(1).intValue();
@@ -635,6 +845,29 @@ public class PebbleTalkerService extends Service
 
     }
 
+    private void historySearchRequested(PebbleDictionary data)
+    {
+        NotificationHistoryStorage.Filter filter = NotificationHistoryStorage.Filter.ALL;
+
+        int preset = data.contains(2) ? data.getUnsignedInteger(2).intValue() : 0;
+        switch (preset)
+        {
+            case 1:
+                filter = NotificationHistoryStorage.Filter.newerThan(System.currentTimeMillis() - 1000 * 3600 * 24);
+                break;
+            case 2:
+                filter = NotificationHistoryStorage.Filter.newerThan(System.currentTimeMillis() - 1000 * 3600 * 24 * 7);
+                break;
+            default:
+                if (data.contains(1))
+                    filter = NotificationHistoryStorage.Filter.search(data.getString(1));
+                break;
+        }
+
+        listHandler = new NotificationHistoryAdapter(this, historyDb, filter);
+        listHandler.sendNotification(0);
+    }
+
     private void moreTextRequested(PebbleDictionary data)
     {
         Timber.d("More text requested...");
@@ -667,11 +900,11 @@ public class PebbleTalkerService extends Service
         data.addUint8(0, (byte) 1);
         data.addInt32(1, id);
         data.addUint8(2, (byte) chunk);
-        data.addString(3, notification.textChunks.get(chunk));
+        data.addString(3, new String(notification.textChunks.get(chunk), TextUtil.UTF_8));
 
         Timber.d("Sending more text...");
 
-        PebbleKit.sendDataToPebble(this, DataReceiver.pebbleAppUUID, data);
+        sendToPebble(data);
         commStarted();
     }
 
@@ -708,7 +941,7 @@ public class PebbleTalkerService extends Service
 
         data.addBytes(3, textData);
 
-        PebbleKit.sendDataToPebble(this, DataReceiver.pebbleAppUUID, data);
+        sendToPebble(data);
         commStarted();
     }
 
@@ -717,10 +950,17 @@ public class PebbleTalkerService extends Service
     {
         Timber.d("Transfer completed...");
 
-        if (curSendingNotification.vibrated)
-            lastAppVibration.put(curSendingNotification.source.getKey().getPackage(), System.currentTimeMillis());
+        //Also called after watch asked for unknown notification, when nothing might be sending at all
+        if (curSendingNotification != null)
+        {
+            if (curSendingNotification.vibrated)
+                lastAppVibration.put(curSendingNotification.source.getKey().getPackage(), System.currentTimeMillis());
 
-        curSendingNotification = null;
+            outboundJournal.notificationDone(curSendingNotification.id);
+            sentNotifications.unpin(curSendingNotification.id);
+
+            curSendingNotification = null;
+        }
 
         Timber.d("csn null: " + (curSendingNotification == null));
         Timber.d("queue size: " + sendingQueue.size());
@@ -795,16 +1035,9 @@ public class PebbleTalkerService extends Service
         //Group messages can't be dismissed (they are not even displayed), so I should find relevat message in actual notification tray
         if (notification.source.getWearGroupType() == PebbleNotification.WEAR_GROUP_TYPE_GROUP_MESSAGE)
         {
-            for (int i = 0; i < sentNotifications.size(); i++)
-            {
-                ProcessedNotification compare = sentNotifications.valueAt(i);
-
-                if (notification.source.isInSameGroup(compare.source) && compare.source.getWearGroupType() == PebbleNotification.WEAR_GROUP_TYPE_GROUP_SUMMARY)
-                {
-                    notification = compare;
-                    break;
-                }
-            }
+            ProcessedNotification summary = sentNotifications.findGroupSummary(notification.source);
+            if (summary != null)
+                notification = summary;
         }
 
         if (!notification.source.isDismissable())
@@ -835,7 +1068,7 @@ public class PebbleTalkerService extends Service
 
         data.addUint8(0, (byte) 3);
 
-        byte[] configBytes = new byte[13];
+        byte[] configBytes = new byte[14];
 
         int timeout = 0;
         try
@@ -891,12 +1124,13 @@ public class PebbleTalkerService extends Service
         configBytes[10] = (byte) Integer.parseInt(settings.getString(PebbleNotificationCenter.SHAKE_ACTION, "1"));
         configBytes[11] = (byte) (vibratingTimeout >>> 0x08);
         configBytes[12] = (byte) vibratingTimeout;
+        configBytes[13] = (byte) WatchappHandler.PHONE_CAPABILITIES;
 
         data.addBytes(1, configBytes);
 
         Timber.d("Sending config...");
 
-        PebbleKit.sendDataToPebble(this, DataReceiver.pebbleAppUUID, data);
+        sendToPebble(data);
 
         commBusy = false;
     }
@@ -917,19 +1151,45 @@ public class PebbleTalkerService extends Service
         editor.apply();
     }
 
+    private void queueDismissal(int id)
+    {
+        notificationRemovalQueue.add(id);
+        outboundJournal.dismissalQueued(id);
+    }
+
+    /**
+     * Puts notifications and dismissals that were not sent before service was killed back into the queues.
+     */
+    private void restorePendingWork()
+    {
+        for (ProcessedNotification notification : outboundJournal.getPendingNotifications())
+        {
+            notification.textChunks = TextUtil.splitToUtf8Chunks(notification.source.getText(), TEXT_CHUNK_SIZE);
+            sentNotifications.put(notification, true);
+            sendingQueue.add(notification);
+        }
+
+        notificationRemovalQueue.addAll(outboundJournal.getPendingDismissals());
+
+        Timber.d("Restored %d notifications and %d dismissals", sendingQueue.size(), notificationRemovalQueue.size());
+
+        if (!sendingQueue.isEmpty() && isWatchConnected())
+            openApp();
+    }
+
     private void pebbleReconnected()
     {
         if (sendingQueue.size() > 0 || curSendingNotification != null)
             openApp();
     }
 
-	private void receivedPacketFromPebble(String jsonPacket)
+	private void receivedPacketFromPebble(byte[] packet)
 	{
         PebbleDictionary data = null;
         try
         {
-            data = PebbleDictionary.fromJson(jsonPacket);
-        } catch (JSONException e)
+            data = PebbleDictionary.fromByteArray(packet);
+        } catch (IllegalArgumentException e)
         {
             Crashlytics.logException(e);
             e.printStackTrace();
@@ -946,7 +1206,7 @@ public class PebbleTalkerService extends Service
         switch (id)
 		{
 		case 0:
-			appOpened();
+			appOpened(data);
 			break;
 		case 1:
 			moreTextRequested(data);
@@ -988,6 +1248,9 @@ public class PebbleTalkerService extends Service
         case 14:
             pebbleDismissRequested(data);
             break;
+        case 15:
+            historySearchRequested(data);
+            break;
 
         }
 	}
@@ -1047,14 +1310,10 @@ public class PebbleTalkerService extends Service
         if (notification.getWearGroupType() == PebbleNotification.WEAR_GROUP_TYPE_GROUP_MESSAGE)
         {
             //Prevent re-sending of the first message.
-            for (int i = 0; i < sentNotifications.size(); i++)
+            if (sentNotifications.containsIdenticalContent(notification))
             {
-                ProcessedNotification comparing = sentNotifications.valueAt(i);
-                if (notification.hasIdenticalContent(comparing.source))
-                {
-                    Timber.d("group notify failed - same notification exists");
-                    return false;
-                }
+                Timber.d("group notify failed - same notification exists");
+                return false;
             }
         }
 
@@ -7,7 +7,7 @@ import java.util.List;
 public class ProcessedNotification
 {
 	public int id;
-	public List<String> textChunks = new ArrayList<String>(13);
+	public List<byte[]> textChunks = new ArrayList<byte[]>(13);
     public ActionList activeActionList;
     public boolean vibrated = false;
 
@@ -0,0 +1,302 @@
+package com.matejdro.pebblenotificationcenter;
+
+import android.os.SystemClock;
+import com.matejdro.pebblenotificationcenter.notifications.actions.NotificationAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import timber.log.Timber;
+
+/**
+ * Notifications that were sent to the Pebble, indexed by ID, notification key, package, wear group and content,
+ * so lookups do not need to scan all sent notifications.
+ *
+ * Store is bounded. When it holds too many notifications, too much estimated memory or notifications that were not used for a long time,
+ * least recently used notifications are evicted. Pebble requests for evicted IDs are handled as requests for unknown notification.
+ * Pinned notifications (waiting to be sent or being sent right now) are never evicted, since watch will still ask for their text.
+ */
+public class SentNotificationStore
+{
+    public static final int MAX_NOTIFICATIONS = 150;
+    public static final int MAX_ESTIMATED_BYTES = 512 * 1024;
+    public static final long MAX_AGE = 1000 * 3600 * 24;
+
+    //Rough estimates of memory used by parts of notification that are not measured directly
+    private static final int NOTIFICATION_OVERHEAD = 512;
+    private static final int ACTION_OVERHEAD = 256;
+
+    private LinkedHashMap<Integer, Entry> byId = new LinkedHashMap<Integer, Entry>(16, 0.75f, true);
+    private int estimatedBytes = 0;
+    private HashMap<String, List<ProcessedNotification>> byKey = new HashMap<String, List<ProcessedNotification>>();
+    private HashMap<String, List<ProcessedNotification>> byPackage = new HashMap<String, List<ProcessedNotification>>();
+    private HashMap<String, List<ProcessedNotification>> byWearGroup = new HashMap<String, List<ProcessedNotification>>();
+    private HashMap<Integer, List<ProcessedNotification>> byContent = new HashMap<Integer, List<ProcessedNotification>>();
+
+    public ProcessedNotification get(int id)
+    {
+        Entry entry = byId.get(id);
+        if (entry == null)
+            return null;
+
+        entry.lastAccess = SystemClock.elapsedRealtime();
+        return entry.notification;
+    }
+
+    public boolean contains(int id)
+    {
+        return byId.containsKey(id);
+    }
+
+    public int getEstimatedBytes()
+    {
+        return estimatedBytes;
+    }
+
+    public int size()
+    {
+        return byId.size();
+    }
+
+    public void put(ProcessedNotification notification)
+    {
+        put(notification, false);
+    }
+
+    public void put(ProcessedNotification notification, boolean pinned)
+    {
+        remove(notification.id);
+
+        Entry entry = new Entry(notification);
+        entry.pinned = pinned;
+        byId.put(notification.id, entry);
+        estimatedBytes += entry.estimatedSize;
+
+        addToIndex(byKey, entry.keyIndex, notification);
+        addToIndex(byPackage, entry.pkg, notification);
+        addToIndex(byContent, entry.contentIndex, notification);
+        if (entry.wearGroup != null)
+            addToIndex(byWearGroup, entry.wearGroup, notification);
+
+        evict();
+    }
+
+    public ProcessedNotification remove(int id)
+    {
+        Entry entry = byId.get(id);
+        if (entry == null)
+            return null;
+
+        byId.remove(id);
+        removeFromIndexes(entry);
+
+        return entry.notification;
+    }
+
+    /**
+     * Allows notification to be evicted again once it was fully sent.
+     */
+    public void unpin(int id)
+    {
+        Entry entry = byId.get(id);
+        if (entry != null)
+            entry.pinned = false;
+    }
+
+    private void removeFromIndexes(Entry entry)
+    {
+        estimatedBytes -= entry.estimatedSize;
+
+        removeFromIndex(byKey, entry.keyIndex, entry.notification);
+        removeFromIndex(byPackage, entry.pkg, entry.notification);
+        removeFromIndex(byContent, entry.contentIndex, entry.notification);
+        if (entry.wearGroup != null)
+            removeFromIndex(byWearGroup, entry.wearGroup, entry.notification);
+    }
+
+    private void evict()
+    {
+        long now = SystemClock.elapsedRealtime();
+
+        Iterator<Entry> iterator = byId.values().iterator();
+        while (iterator.hasNext() && byId.size() > 1)
+        {
+            Entry eldest = iterator.next();
+            if (byId.size() <= MAX_NOTIFICATIONS && estimatedBytes <= MAX_ESTIMATED_BYTES && now - eldest.lastAccess <= MAX_AGE)
+                break;
+
+            if (eldest.pinned)
+                continue;
+
+            Timber.d("Evicting sent notification %d", eldest.notification.id);
+            iterator.remove();
+            removeFromIndexes(eldest);
+        }
+    }
+
+    private static int estimateSize(ProcessedNotification notification)
+    {
+        int size = NOTIFICATION_OVERHEAD;
+
+        for (byte[] chunk : notification.textChunks)
+            size += chunk.length;
+
+        PebbleNotification source = notification.source;
+        size += 2 * (getLength(source.getTitle()) + getLength(source.getSubtitle()) + getLength(source.getText()));
+
+        List<NotificationAction> actions = source.getActions();
+        if (actions != null)
+            size += actions.size() * ACTION_OVERHEAD;
+
+        return size;
+    }
+
+    private static int getLength(String text)
+    {
+        return text == null ? 0 : text.length();
+    }
+
+    /**
+     * @return all non-list notifications that belong to specified Android notification.
+     */
+    public List<ProcessedNotification> getByKey(NotificationKey key)
+    {
+        List<ProcessedNotification> candidates = byKey.get(getKeyIndex(key));
+        if (candidates == null)
+            return Collections.emptyList();
+
+        List<ProcessedNotification> result = new ArrayList<ProcessedNotification>(candidates.size());
+        for (ProcessedNotification notification : candidates)
+        {
+            if (!notification.source.isListNotification() && notification.source.isSameNotification(key))
+                result.add(notification);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return all non-list notifications from specified package.
+     */
+    public List<ProcessedNotification> getByPackage(String pkg)
+    {
+        List<ProcessedNotification> candidates = byPackage.get(pkg);
+        if (candidates == null)
+            return Collections.emptyList();
+
+        List<ProcessedNotification> result = new ArrayList<ProcessedNotification>(candidates.size());
+        for (ProcessedNotification notification : candidates)
+        {
+            if (!notification.source.isListNotification())
+                result.add(notification);
+        }
+
+        return result;
+    }
+
+    public ProcessedNotification findGroupSummary(PebbleNotification groupMember)
+    {
+        if (groupMember.getWearGroupType() == PebbleNotification.WEAR_GROUP_TYPE_DISABLED)
+            return null;
+
+        List<ProcessedNotification> group = byWearGroup.get(groupMember.getWearGroupKey());
+        if (group == null)
+            return null;
+
+        for (ProcessedNotification notification : group)
+        {
+            if (notification.source.getWearGroupType() == PebbleNotification.WEAR_GROUP_TYPE_GROUP_SUMMARY)
+                return notification;
+        }
+
+        return null;
+    }
+
+    public boolean containsIdenticalContent(PebbleNotification notification)
+    {
+        List<ProcessedNotification> candidates = byContent.get(getContentIndex(notification));
+        if (candidates == null)
+            return false;
+
+        for (ProcessedNotification candidate : candidates)
+        {
+            if (notification.hasIdenticalContent(candidate.source))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Index keys are stored with the notification, so it can still be removed from indexes if its fields change later.
+     */
+    private static class Entry
+    {
+        private final ProcessedNotification notification;
+        private final String keyIndex;
+        private final String pkg;
+        private final String wearGroup;
+        private final Integer contentIndex;
+        private final int estimatedSize;
+        private long lastAccess;
+        private boolean pinned;
+
+        private Entry(ProcessedNotification notification)
+        {
+            this.notification = notification;
+            estimatedSize = estimateSize(notification);
+            lastAccess = SystemClock.elapsedRealtime();
+
+            PebbleNotification source = notification.source;
+            keyIndex = getKeyIndex(source.getKey());
+            pkg = source.getKey().getPackage();
+            wearGroup = source.getWearGroupType() == PebbleNotification.WEAR_GROUP_TYPE_DISABLED ? null : source.getWearGroupKey();
+            contentIndex = getContentIndex(source);
+        }
+    }
+
+    private static String getKeyIndex(NotificationKey key)
+    {
+        //Lollipop keys can be compared with old-style keys, so index only uses fields that both have.
+        return key.getPackage() + "|" + key.getAndroidId() + "|" + key.getTag();
+    }
+
+    private static Integer getContentIndex(PebbleNotification notification)
+    {
+        return Arrays.hashCode(new Object[] { notification.getKey().getPackage(), notification.getTitle(), notification.getSubtitle(), notification.getText() });
+    }
+
+    private static <K> void addToIndex(HashMap<K, List<ProcessedNotification>> index, K key, ProcessedNotification notification)
+    {
+        List<ProcessedNotification> list = index.get(key);
+        if (list == null)
+        {
+            list = new ArrayList<ProcessedNotification>(2);
+            index.put(key, list);
+        }
+
+        list.add(notification);
+    }
+
+    private static <K> void removeFromIndex(HashMap<K, List<ProcessedNotification>> index, K key, ProcessedNotification notification)
+    {
+        List<ProcessedNotification> list = index.get(key);
+        if (list == null)
+            return;
+
+        for (int i = 0; i < list.size(); i++)
+        {
+            if (list.get(i) == notification)
+            {
+                list.remove(i);
+                break;
+            }
+        }
+
+        if (list.isEmpty())
+            index.remove(key);
+    }
+}
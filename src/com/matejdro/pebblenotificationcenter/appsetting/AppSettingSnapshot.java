@@ -0,0 +1,124 @@
+package com.matejdro.pebblenotificationcenter.appsetting;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only copy of all settings of one app, resolved once (including fallback to default settings).
+ * Values are indexed by setting ordinal, so reading them does not touch SharedPreferences.
+ */
+public class AppSettingSnapshot implements AppSettingStorage
+{
+    private static final AppSetting[] ALL_SETTINGS = AppSetting.values();
+
+    private final Object[] values;
+    private final boolean appChecked;
+    private final boolean canSendNotifications;
+    private final boolean useDefaultSettings;
+
+    public AppSettingSnapshot(AppSettingStorage source)
+    {
+        values = new Object[ALL_SETTINGS.length];
+
+        for (AppSetting setting : ALL_SETTINGS)
+        {
+            Object def = setting.getDefault();
+
+            Object value;
+            if (def instanceof Boolean)
+                value = source.getBoolean(setting);
+            else if (def instanceof Integer)
+                value = source.getInt(setting);
+            else if (def instanceof String)
+                value = source.getString(setting);
+            else
+                value = Collections.unmodifiableList(source.getStringList(setting));
+
+            values[setting.ordinal()] = value;
+        }
+
+        appChecked = source.isAppChecked();
+        canSendNotifications = source.canAppSendNotifications();
+        useDefaultSettings = source.shouldAppUseDefaultSettings();
+    }
+
+    @Override
+    public String getString(AppSetting setting)
+    {
+        return (String) values[setting.ordinal()];
+    }
+
+    @Override
+    public boolean getBoolean(AppSetting setting)
+    {
+        return (Boolean) values[setting.ordinal()];
+    }
+
+    @Override
+    public int getInt(AppSetting setting)
+    {
+        return (Integer) values[setting.ordinal()];
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<String> getStringList(AppSetting setting)
+    {
+        return (List<String>) values[setting.ordinal()];
+    }
+
+    @Override
+    public void setString(AppSetting setting, String val)
+    {
+        throw new UnsupportedOperationException("Setting snapshot is read-only");
+    }
+
+    @Override
+    public void setBoolean(AppSetting setting, boolean val)
+    {
+        throw new UnsupportedOperationException("Setting snapshot is read-only");
+    }
+
+    @Override
+    public void setInt(AppSetting setting, int val)
+    {
+        throw new UnsupportedOperationException("Setting snapshot is read-only");
+    }
+
+    @Override
+    public void setStringList(AppSetting setting, Collection<String> val)
+    {
+        throw new UnsupportedOperationException("Setting snapshot is read-only");
+    }
+
+    @Override
+    public boolean isAppChecked()
+    {
+        return appChecked;
+    }
+
+    @Override
+    public void setAppChecked(boolean checked)
+    {
+        throw new UnsupportedOperationException("Setting snapshot is read-only");
+    }
+
+    @Override
+    public boolean canAppSendNotifications()
+    {
+        return canSendNotifications;
+    }
+
+    @Override
+    public boolean shouldAppUseDefaultSettings()
+    {
+        return useDefaultSettings;
+    }
+
+    @Override
+    public void setAppUseDefaultSettings(boolean app)
+    {
+        throw new UnsupportedOperationException("Setting snapshot is read-only");
+    }
+}
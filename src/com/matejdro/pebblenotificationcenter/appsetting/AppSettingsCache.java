@@ -0,0 +1,140 @@
+package com.matejdro.pebblenotificationcenter.appsetting;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import com.matejdro.pebblenotificationcenter.PebbleNotificationCenter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps settings snapshots of recently used apps. Snapshot of an app is only rebuilt after
+ * its preference file or default settings change.
+ */
+public class AppSettingsCache
+{
+    private static final int MAX_CACHED_APPS = 32;
+
+    private Context context;
+    private SharedPreferences defaultPreferences;
+    private DefaultAppSettingsStorage defaultSettingsStorage;
+
+    private AppSettingSnapshot defaultSnapshot;
+    private LinkedHashMap<String, CachedApp> cachedApps = new LinkedHashMap<String, CachedApp>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedApp> eldest)
+        {
+            if (size() <= MAX_CACHED_APPS)
+                return false;
+
+            eldest.getValue().release();
+            return true;
+        }
+    };
+
+    //SharedPreferences only keep weak references to listeners, so they must be stored here.
+    private SharedPreferences.OnSharedPreferenceChangeListener defaultsListener = new SharedPreferences.OnSharedPreferenceChangeListener()
+    {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key)
+        {
+            if (isAppSettingKey(key))
+                invalidate();
+        }
+    };
+
+    public AppSettingsCache(Context context, SharedPreferences defaultPreferences)
+    {
+        this.context = context;
+        this.defaultPreferences = defaultPreferences;
+        defaultSettingsStorage = new DefaultAppSettingsStorage(defaultPreferences, defaultPreferences.edit());
+
+        defaultPreferences.registerOnSharedPreferenceChangeListener(defaultsListener);
+    }
+
+    /**
+     * @return read-only settings of specified app. Default settings are returned when package is null.
+     */
+    public synchronized AppSettingStorage get(String pkg)
+    {
+        if (pkg == null)
+        {
+            if (defaultSnapshot == null)
+                defaultSnapshot = new AppSettingSnapshot(defaultSettingsStorage);
+
+            return defaultSnapshot;
+        }
+
+        CachedApp cachedApp = cachedApps.get(pkg);
+        if (cachedApp == null)
+        {
+            cachedApp = new CachedApp(pkg);
+            cachedApps.put(pkg, cachedApp);
+        }
+
+        return cachedApp.snapshot;
+    }
+
+    public synchronized void invalidate()
+    {
+        for (CachedApp cachedApp : cachedApps.values())
+            cachedApp.release();
+
+        cachedApps.clear();
+        defaultSnapshot = null;
+    }
+
+    private synchronized void invalidate(String pkg)
+    {
+        CachedApp cachedApp = cachedApps.remove(pkg);
+        if (cachedApp != null)
+            cachedApp.release();
+    }
+
+    private static boolean isAppSettingKey(String key)
+    {
+        if (key == null)
+            return true;
+
+        if (key.startsWith("appChecked_") || key.equals(PebbleNotificationCenter.APP_INCLUSION_MODE))
+            return true;
+
+        //List settings are stored in multiple entries (key + index), so prefix is enough.
+        for (AppSetting setting : AppSetting.values())
+        {
+            if (key.startsWith(setting.getKey()))
+                return true;
+        }
+
+        return false;
+    }
+
+    private class CachedApp implements SharedPreferences.OnSharedPreferenceChangeListener
+    {
+        private final String pkg;
+        private final SharedPreferences appPreferences;
+        private final AppSettingSnapshot snapshot;
+
+        private CachedApp(String pkg)
+        {
+            this.pkg = pkg;
+
+            SharedPreferencesAppStorage storage = new SharedPreferencesAppStorage(context, pkg, defaultSettingsStorage, true);
+            snapshot = new AppSettingSnapshot(storage);
+
+            appPreferences = context.getSharedPreferences("app_".concat(SharedPreferencesAppStorage.filterAppName(pkg)), Context.MODE_PRIVATE);
+            appPreferences.registerOnSharedPreferenceChangeListener(this);
+        }
+
+        private void release()
+        {
+            appPreferences.unregisterOnSharedPreferenceChangeListener(this);
+        }
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key)
+        {
+            invalidate(pkg);
+        }
+    }
+}
@@ -1,63 +1,165 @@
 package com.matejdro.pebblenotificationcenter.lists;
 
 import android.content.Intent;
+import android.database.Cursor;
+import android.util.SparseArray;
 import com.matejdro.pebblenotificationcenter.NotificationHistoryStorage;
 import com.matejdro.pebblenotificationcenter.NotificationKey;
 import com.matejdro.pebblenotificationcenter.PebbleNotification;
 import com.matejdro.pebblenotificationcenter.PebbleTalkerService;
-import java.util.ArrayList;
-import java.util.List;
-
-import android.database.Cursor;
 
+/**
+ * Lists notification history. Only title, subtitle and time of the currently needed pages are loaded from the database,
+ * notification text is loaded when entry is opened.
+ */
 public class NotificationHistoryAdapter extends NotificationListAdapter {
-	private List<PebbleNotification> notifications;
+	private static final int PAGE_SIZE = 20;
+	private static final int MAX_CACHED_PAGES = 3;
+
 	private NotificationHistoryStorage storage;
+	private NotificationHistoryStorage.Filter filter;
+	private int numOfNotifications;
+	//Notifications stored after list was opened are not displayed, so positions of entries do not shift
+	private long maxId;
+
+	private SparseArray<Page> cachedPages = new SparseArray<Page>();
+	private int pageAccessCounter = 0;
 	
 	public NotificationHistoryAdapter(PebbleTalkerService service, NotificationHistoryStorage storage) {
+		this(service, storage, NotificationHistoryStorage.Filter.ALL);
+	}
+
+	public NotificationHistoryAdapter(PebbleTalkerService service, NotificationHistoryStorage storage, NotificationHistoryStorage.Filter filter) {
 		super(service);
 		this.storage = storage;
+		this.filter = filter;
 		
 		loadNotifications();
 	}
 	
 	public void loadNotifications()
 	{
-		Cursor cursor = storage.getReadableDatabase().rawQuery("SELECT PostTime, Title, Subtitle, Text FROM notifications ORDER BY PostTime DESC LIMIT 150", null);
-		notifications = new ArrayList<PebbleNotification>(cursor.getCount());
-		
-		while (cursor.moveToNext())
-		{
-            long sendingDate = cursor.getLong(0);
-            String title = cursor.getString(1);
-            String text = cursor.getString(3) + "\n\nSent on " + getFormattedDate(sendingDate);
-            NotificationKey key = new NotificationKey(null, null, null);
+		storage.flush();
 
-            PebbleNotification notification = new PebbleNotification(title, text, key);
-			notification.setSubtitle(cursor.getString(2));
-			notification.setPostTime(sendingDate);
-            notification.setListNotification(true);
+		cachedPages.clear();
 
-			notifications.add(notification);
+		Cursor cursor = storage.getReadableDatabase().rawQuery("SELECT COUNT(*), MAX(_id) FROM notifications WHERE " + filter.getSelection(), filter.getSelectionArgs());
+		if (cursor.moveToNext())
+		{
+			numOfNotifications = Math.min(cursor.getInt(0), storage.getHistoryDepth());
+			maxId = cursor.getLong(1);
 		}
+		cursor.close();
 	}
 
 	@Override
 	public PebbleNotification getNotificationAt(int index) {
-		return notifications.get(index);
+		Page page = getPage(index / PAGE_SIZE);
+		return page.notifications[index % PAGE_SIZE];
 	}
 
 	@Override
 	public int getNumOfNotifications() {
-		return notifications.size();
+		return numOfNotifications;
 	}
 
 	@Override
 	public void notificationPicked(int index) {
-        PebbleNotification notification = notifications.get(index);
+        PebbleNotification header = getNotificationAt(index);
+        long id = getPage(index / PAGE_SIZE).ids[index % PAGE_SIZE];
+
+        String text = storage.loadText(id);
+        if (text == null)
+            text = "";
+
+        text += "\n\nSent on " + getFormattedDate(header.getPostTime());
+
+        PebbleNotification notification = new PebbleNotification(header.getTitle(), text, header.getKey());
+        notification.setSubtitle(header.getSubtitle());
+        notification.setPostTime(header.getPostTime());
+        notification.setListNotification(true);
 
         Intent startIntent = new Intent(service, PebbleTalkerService.class);
         startIntent.putExtra("notification", notification);
         service.startService(startIntent);
 	}
+
+	private Page getPage(int pageIndex)
+	{
+		Page page = cachedPages.get(pageIndex);
+		if (page == null)
+		{
+			page = loadPage(pageIndex);
+
+			if (cachedPages.size() >= MAX_CACHED_PAGES)
+			{
+				int oldest = 0;
+				for (int i = 1; i < cachedPages.size(); i++)
+				{
+					if (cachedPages.valueAt(i).lastAccess < cachedPages.valueAt(oldest).lastAccess)
+						oldest = i;
+				}
+				cachedPages.removeAt(oldest);
+			}
+
+			cachedPages.put(pageIndex, page);
+		}
+
+		page.lastAccess = pageAccessCounter++;
+		return page;
+	}
+
+	private Page loadPage(int pageIndex)
+	{
+		int start = pageIndex * PAGE_SIZE;
+		int size = Math.max(0, Math.min(PAGE_SIZE, numOfNotifications - start));
+
+		Page page = new Page(size);
+
+		String[] args = new String[filter.getSelectionArgs().length + 1];
+		System.arraycopy(filter.getSelectionArgs(), 0, args, 0, args.length - 1);
+		args[args.length - 1] = Long.toString(maxId);
+
+		Cursor cursor = storage.getReadableDatabase().rawQuery("SELECT _id, PostTime, Title, Subtitle FROM notifications WHERE " + filter.getSelection() + " AND _id <= ? ORDER BY PostTime DESC, _id DESC LIMIT " + size + " OFFSET " + start, args);
+		int i = 0;
+		while (cursor.moveToNext() && i < size)
+		{
+			NotificationKey key = new NotificationKey(null, null, null);
+
+			PebbleNotification notification = new PebbleNotification(cursor.getString(2), "", key);
+			notification.setSubtitle(cursor.getString(3));
+			notification.setPostTime(cursor.getLong(1));
+			notification.setListNotification(true);
+
+			page.ids[i] = cursor.getLong(0);
+			page.notifications[i] = notification;
+			i++;
+		}
+		cursor.close();
+
+		//Rows may have been deleted by cleanup in the meantime
+		for (; i < size; i++)
+		{
+			PebbleNotification notification = new PebbleNotification("", "", new NotificationKey(null, null, null));
+			notification.setSubtitle("");
+			notification.setListNotification(true);
+			page.ids[i] = -1;
+			page.notifications[i] = notification;
+		}
+
+		return page;
+	}
+
+	private static class Page
+	{
+		private final long[] ids;
+		private final PebbleNotification[] notifications;
+		private int lastAccess;
+
+		private Page(int size)
+		{
+			ids = new long[size];
+			notifications = new PebbleNotification[size];
+		}
+	}
 }
@@ -1,11 +1,11 @@
 package com.matejdro.pebblenotificationcenter.lists;
 
-import com.getpebble.android.kit.PebbleKit;
 import com.getpebble.android.kit.util.PebbleDictionary;
-import com.matejdro.pebblenotificationcenter.DataReceiver;
 import com.matejdro.pebblenotificationcenter.PebbleNotification;
 import com.matejdro.pebblenotificationcenter.PebbleTalkerService;
+import com.matejdro.pebblenotificationcenter.pebble.WatchappHandler;
 import com.matejdro.pebblenotificationcenter.util.TextUtil;
+import java.io.ByteArrayOutputStream;
 import java.text.DateFormat;
 import java.util.Date;
 import timber.log.Timber;
@@ -55,6 +55,17 @@ public abstract class NotificationListAdapter {
 	
 	public void sendNotification(int index)
 	{
+		if (index < getNumOfNotifications() && service.isWatchappCapable(WatchappHandler.CAPABILITY_LIST_PAGING))
+		{
+			int nextPage = sendPage(index);
+
+			//Prefetch next page, so it is already on the watch when user scrolls there
+			if (nextPage < getNumOfNotifications())
+				sendPage(nextPage);
+
+			return;
+		}
+
 		PebbleDictionary data = new PebbleDictionary();
 
 		if (index >= getNumOfNotifications())
@@ -67,7 +78,7 @@ public abstract class NotificationListAdapter {
 			data.addString(5, "");
 			data.addString(6, "");
 			
-			PebbleKit.sendDataToPebble(service, DataReceiver.pebbleAppUUID, data);
+			service.sendToPebble(data);
 
 			return;
 		}
@@ -84,9 +95,69 @@ public abstract class NotificationListAdapter {
 
 		Timber.i("Sending notification " + index + " " + data.getString(4));
 		
-		PebbleKit.sendDataToPebble(service, DataReceiver.pebbleAppUUID, data);
+		service.sendToPebble(data);
 	}
 	
+	/**
+	 * Sends as many list entries starting at specified index as fit into one message.
+	 *
+	 * @return index of the first entry that was not sent.
+	 */
+	private int sendPage(int index)
+	{
+		//Dictionary header (1 byte), four tuple headers (7 bytes each) and values of packet id, offset and count
+		int capacity = service.getWatchappInboxSize() - 1 - 4 * 7 - 1 - 2 - 2;
+
+		ByteArrayOutputStream rows = new ByteArrayOutputStream(capacity);
+		int end = index;
+		while (end < getNumOfNotifications())
+		{
+			byte[] row = encodeRow(getNotificationAt(end));
+			if (end > index && rows.size() + row.length > capacity)
+				break;
+
+			rows.write(row, 0, row.length);
+			end++;
+		}
+
+		PebbleDictionary data = new PebbleDictionary();
+		data.addUint8(0, (byte) 7);
+		data.addUint16(1, (short) index);
+		data.addUint16(2, (short) getNumOfNotifications());
+		data.addBytes(3, rows.toByteArray());
+
+		Timber.i("Sending list entries %d - %d", index, end - 1);
+
+		service.sendToPebble(data);
+
+		return end;
+	}
+
+	private byte[] encodeRow(PebbleNotification notification)
+	{
+		byte[] title = getCString(TextUtil.prepareString(notification.getTitle()));
+		byte[] subtitle = getCString(TextUtil.prepareString(notification.getSubtitle()));
+		byte[] date = getCString(getFormattedDate(notification.getPostTime()));
+
+		byte[] row = new byte[1 + title.length + subtitle.length + date.length];
+		row[0] = (byte) (notification.isDismissable() ? 0 : 1);
+		System.arraycopy(title, 0, row, 1, title.length);
+		System.arraycopy(subtitle, 0, row, 1 + title.length, subtitle.length);
+		System.arraycopy(date, 0, row, 1 + title.length + subtitle.length, date.length);
+
+		return row;
+	}
+
+	private static byte[] getCString(String text)
+	{
+		if (text == null)
+			text = "";
+
+		byte[] cString = new byte[TextUtil.getUtf8Length(text) + 1];
+		TextUtil.encodeUtf8(text, 0, text.length(), cString, 0);
+		return cString;
+	}
+
 	public String getFormattedDate(long date)
 	{
 		DateFormat dateFormat = android.text.format.DateFormat.getDateFormat(service);
@@ -1,8 +1,6 @@
 package com.matejdro.pebblenotificationcenter.lists.actions;
 
-import com.getpebble.android.kit.PebbleKit;
 import com.getpebble.android.kit.util.PebbleDictionary;
-import com.matejdro.pebblenotificationcenter.DataReceiver;
 import com.matejdro.pebblenotificationcenter.PebbleTalkerService;
 import com.matejdro.pebblenotificationcenter.ProcessedNotification;
 import com.matejdro.pebblenotificationcenter.util.TextUtil;
@@ -55,7 +53,7 @@ public abstract class ActionList
 
         data.addBytes(3, textData);
 
-        PebbleKit.sendDataToPebble(service, DataReceiver.pebbleAppUUID, data);
+        service.sendToPebble(data);
         service.commStarted();
     }
 
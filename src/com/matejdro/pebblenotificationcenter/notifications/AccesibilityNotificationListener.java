@@ -32,7 +32,7 @@ public class AccesibilityNotificationListener extends AccessibilityService {
 		
 		Notification notification = (Notification) parcelable;
 		
-		NotificationHandler.newNotification(this, new NotificationKey(event.getPackageName().toString(), null, null), notification, false);
+		NotificationIngestion.enqueue(this, new NotificationKey(event.getPackageName().toString(), null, null), notification, false);
 	}
 
 	@Override
@@ -0,0 +1,164 @@
+package com.matejdro.pebblenotificationcenter.notifications;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.service.notification.StatusBarNotification;
+import com.matejdro.pebblenotificationcenter.NotificationKey;
+import com.matejdro.pebblenotificationcenter.PebbleNotification;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Sorted list of notifications that are currently displayed in the notification tray, updated from notification listener.
+ *
+ * Only fields needed for sorting are read when notification is posted. Text is parsed the first time
+ * notification is displayed in the list and actions are only loaded when it is opened.
+ */
+@TargetApi(value = Build.VERSION_CODES.JELLY_BEAN_MR2)
+public class ActiveNotificationIndex
+{
+    private static final ArrayList<Entry> entries = new ArrayList<Entry>();
+    private static final HashMap<String, Entry> entriesByKey = new HashMap<String, Entry>();
+    private static boolean loaded = false;
+
+    private static final Comparator<Entry> ORDER = new Comparator<Entry>()
+    {
+        @Override
+        public int compare(Entry lhs, Entry rhs)
+        {
+            //First sort by normal/onging, then by date.
+            if (lhs.dismissable != rhs.dismissable)
+                return lhs.dismissable ? -1 : 1;
+
+            long lhsTime = lhs.postTime;
+            long rhsTime = rhs.postTime;
+            return lhsTime < rhsTime ? 1 : (lhsTime == rhsTime ? 0 : -1);
+        }
+    };
+
+    public static synchronized void notificationPosted(StatusBarNotification sbn)
+    {
+        if (!loaded)
+            return;
+
+        Entry entry = new Entry(sbn);
+        removeEntry(entry.mapKey);
+
+        int position = Collections.binarySearch(entries, entry, ORDER);
+        if (position < 0)
+            position = -position - 1;
+
+        entries.add(position, entry);
+        entriesByKey.put(entry.mapKey, entry);
+    }
+
+    public static synchronized void notificationRemoved(StatusBarNotification sbn)
+    {
+        if (!loaded)
+            return;
+
+        removeEntry(NotificationHandler.getKeyFromSbn(sbn).toString());
+    }
+
+    /**
+     * Drops the index. It will be reloaded from notification listener next time it is needed.
+     */
+    public static synchronized void reset()
+    {
+        entries.clear();
+        entriesByKey.clear();
+        loaded = false;
+    }
+
+    /**
+     * @return copy of the currently active notifications in display order.
+     */
+    public static synchronized List<Entry> getEntries(Context context)
+    {
+        if (!loaded)
+            load(context);
+
+        return new ArrayList<Entry>(entries);
+    }
+
+    private static void load(Context context)
+    {
+        StatusBarNotification[] sbns = JellybeanNotificationListener.getCurrentNotifications();
+        if (sbns == null)
+            return;
+
+        entries.clear();
+        entriesByKey.clear();
+
+        for (StatusBarNotification sbn : sbns)
+        {
+            Entry entry = new Entry(sbn);
+            removeEntry(entry.mapKey);
+
+            entries.add(entry);
+            entriesByKey.put(entry.mapKey, entry);
+        }
+
+        Collections.sort(entries, ORDER);
+
+        //Index can only be kept up to date while listener is running.
+        loaded = JellybeanNotificationListener.instance != null;
+    }
+
+    private static void removeEntry(String mapKey)
+    {
+        Entry entry = entriesByKey.remove(mapKey);
+        if (entry != null)
+            entries.remove(entry);
+    }
+
+    public static class Entry
+    {
+        private final String mapKey;
+        private final NotificationKey key;
+        private final StatusBarNotification sbn;
+        private final long postTime;
+        private final boolean dismissable;
+        private PebbleNotification listRow;
+
+        private Entry(StatusBarNotification sbn)
+        {
+            this.sbn = sbn;
+
+            key = NotificationHandler.getKeyFromSbn(sbn);
+            mapKey = key.toString();
+            postTime = sbn.getPostTime();
+            dismissable = sbn.isClearable();
+        }
+
+        /**
+         * @return notification without actions, enough to display it in the list. Notification is only parsed once.
+         */
+        public synchronized PebbleNotification getListRow(Context context)
+        {
+            if (listRow == null)
+            {
+                listRow = NotificationHandler.parseNotificationText(context, key, sbn.getNotification(), dismissable);
+                listRow.setPostTime(postTime);
+            }
+
+            return listRow;
+        }
+
+        /**
+         * @return fully parsed notification with text and actions that can be sent to the watch.
+         */
+        public PebbleNotification getNotification(Context context)
+        {
+            PebbleNotification notification = NotificationHandler.getPebbleNotificationFromAndroidNotification(context, key, sbn.getNotification(), dismissable);
+            notification.setPostTime(postTime);
+            notification.setListNotification(true);
+
+            return notification;
+        }
+    }
+}
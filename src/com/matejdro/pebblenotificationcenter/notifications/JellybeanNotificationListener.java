@@ -1,18 +1,14 @@
 package com.matejdro.pebblenotificationcenter.notifications;
 
 import android.annotation.TargetApi;
-import android.content.Intent;
 import android.os.Build;
-import android.os.Handler;
 import android.service.notification.NotificationListenerService;
 import android.service.notification.StatusBarNotification;
 import com.matejdro.pebblenotificationcenter.NotificationKey;
-import com.matejdro.pebblenotificationcenter.PebbleTalkerService;
 import timber.log.Timber;
 
 @TargetApi(value = Build.VERSION_CODES.JELLY_BEAN_MR2)
 public class JellybeanNotificationListener extends NotificationListenerService {
-	private Handler handler;
 	public static JellybeanNotificationListener instance;
 	
 	@Override
@@ -22,13 +18,13 @@ public class JellybeanNotificationListener extends NotificationListenerService {
         Timber.d("Notification Listener stopped...");
 
         instance = null;
+        ActiveNotificationIndex.reset();
 	}
 
 	@Override
 	public void onCreate() {
         Timber.d("Creating Notification Listener...");
 
-		handler = new Handler();
 		instance = this;
 
 		NotificationHandler.active = true;
@@ -41,24 +37,16 @@ public class JellybeanNotificationListener extends NotificationListenerService {
 	}
 
 	@Override
-	public void onNotificationPosted(final StatusBarNotification sbn) {
-        handler.post(new Runnable() {
-
-			@Override
-			public void run() {
-				NotificationHandler.newNotification(JellybeanNotificationListener.this, NotificationHandler.getKeyFromSbn(sbn), sbn.getNotification(), true);
-			}
-		});
+	public void onNotificationPosted(StatusBarNotification sbn) {
+        ActiveNotificationIndex.notificationPosted(sbn);
+        NotificationIngestion.enqueue(this, NotificationHandler.getKeyFromSbn(sbn), sbn.getNotification(), true);
 	}
 
 	@Override
 	public void onNotificationRemoved(StatusBarNotification sbn) {
         NotificationKey key = NotificationHandler.getKeyFromSbn(sbn);
-
-
-        Intent intent = new Intent(this, PebbleTalkerService.class);
-        intent.putExtra("dismissUpwardsKey", key);
-        startService(intent);
+        ActiveNotificationIndex.notificationRemoved(sbn);
+        NotificationIngestion.remove(this, key);
 	}
 
     @TargetApi(value = Build.VERSION_CODES.LOLLIPOP)
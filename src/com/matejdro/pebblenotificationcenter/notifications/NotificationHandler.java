@@ -18,13 +18,8 @@ import com.matejdro.pebblenotificationcenter.PebbleNotificationCenter;
 import com.matejdro.pebblenotificationcenter.PebbleTalkerService;
 import com.matejdro.pebblenotificationcenter.appsetting.AppSetting;
 import com.matejdro.pebblenotificationcenter.appsetting.AppSettingStorage;
-import com.matejdro.pebblenotificationcenter.appsetting.SharedPreferencesAppStorage;
 import com.matejdro.pebblenotificationcenter.notifications.actions.ActionParser;
 import com.matejdro.pebblenotificationcenter.util.SettingsMemoryStorage;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 import timber.log.Timber;
 
 public class NotificationHandler {
@@ -36,7 +31,7 @@ public class NotificationHandler {
 
 		SettingsMemoryStorage settings = PebbleNotificationCenter.getInMemorySettings();
 		SharedPreferences preferences = settings.getSharedPreferences();
-        AppSettingStorage settingStorage = new SharedPreferencesAppStorage(context, key.getPackage(), settings.getDefaultSettingsStorage(), true);
+        AppSettingStorage settingStorage = settings.getAppSettingStorage(key.getPackage());
 
 		boolean enableOngoing = settingStorage.getBoolean(AppSetting.SEND_ONGOING_NOTIFICATIONS);
 		boolean isOngoing = (notification.flags & Notification.FLAG_ONGOING_EVENT) != 0;
@@ -66,12 +61,12 @@ public class NotificationHandler {
 
         String combinedText = pebbleNotification.getTitle() + " " + pebbleNotification.getSubtitle() + " " + pebbleNotification.getText();
 
-        List<String> regexList = settingStorage.getStringList(AppSetting.INCLUDED_REGEX);
-        if (regexList.size() > 0 && !containsRegexes(combinedText, regexList))
+        RegexFilterCache.CompiledFilter regexFilter = RegexFilterCache.getFilter(key.getPackage(), AppSetting.INCLUDED_REGEX, settingStorage.getStringList(AppSetting.INCLUDED_REGEX));
+        if (regexFilter.hasEntries() && !regexFilter.find(combinedText))
             return;
 
-        regexList = settingStorage.getStringList(AppSetting.EXCLUDED_REGEX);
-        if (containsRegexes(combinedText, regexList))
+        regexFilter = RegexFilterCache.getFilter(key.getPackage(), AppSetting.EXCLUDED_REGEX, settingStorage.getStringList(AppSetting.EXCLUDED_REGEX));
+        if (regexFilter.find(combinedText))
             return;
 
         Intent startIntent = new Intent(context, PebbleTalkerService.class);
@@ -80,6 +75,18 @@ public class NotificationHandler {
     }
 
     public static PebbleNotification getPebbleNotificationFromAndroidNotification(Context context, NotificationKey key, Notification notification, boolean isDismissible)
+    {
+        PebbleNotification pebbleNotification = parseNotificationText(context, key, notification, isDismissible);
+        ActionParser.loadActions(notification, pebbleNotification, context);
+
+        return pebbleNotification;
+    }
+
+    /**
+     * Same as {@link #getPebbleNotificationFromAndroidNotification(Context, NotificationKey, Notification, boolean)}, but without actions,
+     * which are much more expensive to load.
+     */
+    public static PebbleNotification parseNotificationText(Context context, NotificationKey key, Notification notification, boolean isDismissible)
     {
         final String title = getAppName(context, key.getPackage());
 
@@ -96,8 +103,6 @@ public class NotificationHandler {
         pebbleNotification.setSubtitle(secondaryTitle);
         pebbleNotification.setDismissable(isDismissible);
 
-        ActionParser.loadActions(notification, pebbleNotification, context);
-
         return pebbleNotification;
     }
 
@@ -195,26 +200,6 @@ public class NotificationHandler {
 
 	}
 
-    public static boolean containsRegexes(String text, List<String> regexes)
-    {
-        for (String regex : regexes)
-        {
-            try
-            {
-                Pattern pattern = Pattern.compile(regex);
-                Matcher matcher = pattern.matcher(text);
-                if (matcher.find())
-                    return true;
-            }
-            catch (PatternSyntaxException e)
-            {
-            }
-        }
-
-        return false;
-    }
-
-
 	public static boolean isNotificationListenerSupported()
 	{
         return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
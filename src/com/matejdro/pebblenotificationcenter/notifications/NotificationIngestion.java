@@ -0,0 +1,257 @@
+package com.matejdro.pebblenotificationcenter.notifications;
+
+import android.app.Notification;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import com.matejdro.pebblenotificationcenter.NotificationKey;
+import com.matejdro.pebblenotificationcenter.PebbleNotificationCenter;
+import com.matejdro.pebblenotificationcenter.PebbleTalkerService;
+import com.matejdro.pebblenotificationcenter.appsetting.AppSetting;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import timber.log.Timber;
+
+/**
+ * Parses and filters incoming notifications on a background thread, so main thread (that also runs PebbleTalkerService)
+ * is not blocked by it. Only finished notifications are passed to PebbleTalkerService.
+ *
+ * Waiting queue is bounded. When it is full, oldest waiting notification is dropped, since newer notifications
+ * are more relevant to the user.
+ *
+ * Apps can also have coalescing window set. Updates of the same notification that arrive within that window
+ * are merged and only latest version is processed when window expires.
+ *
+ * Removals go through the same queue, so they always reach PebbleTalkerService after the notification they remove.
+ */
+public class NotificationIngestion
+{
+    public static final int QUEUE_CAPACITY = 64;
+    public static final int MAX_COALESCE_WINDOW = 30000;
+
+    private static final ArrayDeque<PendingNotification> queue = new ArrayDeque<PendingNotification>(QUEUE_CAPACITY);
+    private static final HashMap<String, PendingNotification> coalescingNotifications = new HashMap<String, PendingNotification>();
+    private static HandlerThread thread;
+    private static Handler handler;
+
+    private static int maxQueueDepth = 0;
+    private static long processedCount = 0;
+    private static long droppedCount = 0;
+    private static long mergedCount = 0;
+
+    private static final Runnable processNext = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            PendingNotification pendingNotification;
+            synchronized (queue)
+            {
+                pendingNotification = queue.poll();
+            }
+
+            if (pendingNotification == null)
+                return;
+
+            if (pendingNotification.wholePackage)
+            {
+                Intent intent = new Intent(pendingNotification.context, PebbleTalkerService.class);
+                intent.putExtra("dismissUpwardsPackage", pendingNotification.key.getPackage());
+                pendingNotification.context.startService(intent);
+            }
+            else if (pendingNotification.notification == null)
+            {
+                Intent intent = new Intent(pendingNotification.context, PebbleTalkerService.class);
+                intent.putExtra("dismissUpwardsKey", pendingNotification.key);
+                pendingNotification.context.startService(intent);
+            }
+            else
+            {
+                NotificationHandler.newNotification(pendingNotification.context, pendingNotification.key, pendingNotification.notification, pendingNotification.dismissible);
+            }
+
+            synchronized (queue)
+            {
+                processedCount++;
+
+                if (queue.isEmpty())
+                    Timber.d("Notification queue drained. Processed %d, merged %d, dropped %d, max depth %d", processedCount, mergedCount, droppedCount, maxQueueDepth);
+            }
+        }
+    };
+
+    public static void enqueue(Context context, NotificationKey key, Notification notification, boolean isDismissible)
+    {
+        //Notifications without ID (from accessibility service) cannot be told apart, so they are never merged.
+        int coalesceWindow = key.getAndroidId() == null ? 0 : getCoalesceWindow(key.getPackage());
+
+        synchronized (queue)
+        {
+            startThread();
+
+            if (coalesceWindow <= 0)
+            {
+                addToQueue(new PendingNotification(context.getApplicationContext(), key, notification, isDismissible));
+                return;
+            }
+
+            final String coalescingKey = key.toString();
+            PendingNotification pendingNotification = coalescingNotifications.get(coalescingKey);
+            if (pendingNotification != null)
+            {
+                pendingNotification.notification = notification;
+                pendingNotification.dismissible = isDismissible;
+                mergedCount++;
+                return;
+            }
+
+            pendingNotification = new PendingNotification(context.getApplicationContext(), key, notification, isDismissible);
+            coalescingNotifications.put(coalescingKey, pendingNotification);
+
+            final PendingNotification finalPendingNotification = pendingNotification;
+            handler.postDelayed(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    synchronized (queue)
+                    {
+                        if (coalescingNotifications.get(coalescingKey) != finalPendingNotification)
+                            return;
+
+                        coalescingNotifications.remove(coalescingKey);
+                        addToQueue(finalPendingNotification);
+                    }
+                }
+            }, coalesceWindow);
+        }
+    }
+
+    /**
+     * Drops waiting versions of the notification and queues its dismissal behind the notification that is currently processed,
+     * so notification is not sent after being dismissed on the phone.
+     */
+    public static void remove(Context context, NotificationKey key)
+    {
+        String coalescingKey = key.toString();
+
+        synchronized (queue)
+        {
+            startThread();
+
+            coalescingNotifications.remove(coalescingKey);
+
+            Iterator<PendingNotification> iterator = queue.iterator();
+            while (iterator.hasNext())
+            {
+                PendingNotification pendingNotification = iterator.next();
+                if (pendingNotification.notification != null && pendingNotification.key.toString().equals(coalescingKey))
+                    iterator.remove();
+            }
+
+            addToQueue(new PendingNotification(context.getApplicationContext(), key, null, false));
+        }
+    }
+
+    /**
+     * Same as {@link #remove(Context, NotificationKey)}, but for all notifications of the package.
+     */
+    public static void removePackage(Context context, String pkg)
+    {
+        synchronized (queue)
+        {
+            startThread();
+
+            Iterator<PendingNotification> coalescingIterator = coalescingNotifications.values().iterator();
+            while (coalescingIterator.hasNext())
+            {
+                if (pkg.equals(coalescingIterator.next().key.getPackage()))
+                    coalescingIterator.remove();
+            }
+
+            Iterator<PendingNotification> iterator = queue.iterator();
+            while (iterator.hasNext())
+            {
+                PendingNotification pendingNotification = iterator.next();
+                if (pendingNotification.notification != null && pkg.equals(pendingNotification.key.getPackage()))
+                    iterator.remove();
+            }
+
+            PendingNotification removal = new PendingNotification(context.getApplicationContext(), new NotificationKey(pkg, null, null), null, false);
+            removal.wholePackage = true;
+            addToQueue(removal);
+        }
+    }
+
+    private static void startThread()
+    {
+        if (thread == null)
+        {
+            thread = new HandlerThread("NotificationIngestion", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+    }
+
+    private static void addToQueue(PendingNotification pendingNotification)
+    {
+        if (queue.size() >= QUEUE_CAPACITY)
+        {
+            //Removals are never dropped, otherwise notification could stay on the watch
+            Iterator<PendingNotification> iterator = queue.iterator();
+            while (iterator.hasNext())
+            {
+                PendingNotification dropped = iterator.next();
+                if (dropped.notification == null)
+                    continue;
+
+                iterator.remove();
+                droppedCount++;
+
+                Timber.w("Notification queue is full. Dropping notification from %s (%d dropped so far)", dropped.key.getPackage(), droppedCount);
+                break;
+            }
+        }
+
+        queue.add(pendingNotification);
+        maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+
+        handler.post(processNext);
+    }
+
+    private static int getCoalesceWindow(String pkg)
+    {
+        try
+        {
+            int window = Integer.parseInt(PebbleNotificationCenter.getInMemorySettings().getAppSettingStorage(pkg).getString(AppSetting.UPDATE_COALESCE_WINDOW));
+            return Math.min(window, MAX_COALESCE_WINDOW);
+        } catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * Queued notification or its removal (notification is null then).
+     */
+    private static class PendingNotification
+    {
+        private final Context context;
+        private final NotificationKey key;
+        private Notification notification;
+        private boolean dismissible;
+        //Removal of all notifications of the key's package
+        private boolean wholePackage;
+
+        private PendingNotification(Context context, NotificationKey key, Notification notification, boolean dismissible)
+        {
+            this.context = context;
+            this.key = key;
+            this.notification = notification;
+            this.dismissible = dismissible;
+        }
+    }
+}
@@ -13,7 +13,6 @@ import com.crashlytics.android.Crashlytics;
 import com.matejdro.pebblenotificationcenter.PebbleNotificationCenter;
 import com.matejdro.pebblenotificationcenter.appsetting.AppSetting;
 import com.matejdro.pebblenotificationcenter.appsetting.AppSettingStorage;
-import com.matejdro.pebblenotificationcenter.appsetting.SharedPreferencesAppStorage;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 
@@ -105,7 +104,7 @@ public class NotificationParser {
     @TargetApi(value = Build.VERSION_CODES.JELLY_BEAN)
     public boolean parseInboxNotification(Context context, String pkg, Bundle extras)
     {
-        AppSettingStorage settingStorage = new SharedPreferencesAppStorage(context, pkg, PebbleNotificationCenter.getInMemorySettings().getDefaultSettingsStorage(), true);
+        AppSettingStorage settingStorage = PebbleNotificationCenter.getInMemorySettings().getAppSettingStorage(pkg);
         if (!settingStorage.getBoolean(AppSetting.USE_ALTERNATE_INBOX_PARSER))
             return false;
 
@@ -0,0 +1,136 @@
+package com.matejdro.pebblenotificationcenter.notifications;
+
+import com.matejdro.pebblenotificationcenter.appsetting.AppSetting;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Keeps compiled regex lists (INCLUDED_REGEX / EXCLUDED_REGEX) of every app, so patterns are not compiled again for every notification.
+ */
+public class RegexFilterCache
+{
+    private static final EnumMap<AppSetting, HashMap<String, CompiledFilter>> cache = new EnumMap<AppSetting, HashMap<String, CompiledFilter>>(AppSetting.class);
+
+    /**
+     * @return compiled filter for specified app and setting. Filter is only recompiled when regex list differs from the cached one.
+     */
+    public static synchronized CompiledFilter getFilter(String pkg, AppSetting setting, List<String> regexes)
+    {
+        HashMap<String, CompiledFilter> settingCache = cache.get(setting);
+        if (settingCache == null)
+        {
+            settingCache = new HashMap<String, CompiledFilter>();
+            cache.put(setting, settingCache);
+        }
+
+        CompiledFilter filter = settingCache.get(pkg);
+        if (filter == null || !filter.source.equals(regexes))
+        {
+            filter = new CompiledFilter(regexes);
+            settingCache.put(pkg, filter);
+        }
+
+        return filter;
+    }
+
+    public static synchronized void invalidate()
+    {
+        cache.clear();
+    }
+
+    public static class CompiledFilter
+    {
+        private final List<String> source;
+
+        //All valid regexes merged into one alternation. Null if they could not be merged.
+        private Pattern combined;
+        private List<Pattern> separate;
+
+        private CompiledFilter(List<String> regexes)
+        {
+            source = new ArrayList<String>(regexes);
+            separate = new ArrayList<Pattern>(regexes.size());
+
+            StringBuilder combinedRegex = new StringBuilder();
+            boolean canCombine = true;
+
+            for (String regex : regexes)
+            {
+                try
+                {
+                    separate.add(Pattern.compile(regex));
+                } catch (PatternSyntaxException e)
+                {
+                    continue;
+                }
+
+                //Group numbers would shift in combined pattern, so back-references would point to wrong groups.
+                //Quoting with \Q does not need \E at the end, so it could swallow the rest of the combined pattern.
+                if (hasUnmergeableEscape(regex))
+                    canCombine = false;
+
+                if (combinedRegex.length() > 0)
+                    combinedRegex.append('|');
+                combinedRegex.append("(?:").append(regex).append(')');
+            }
+
+            if (canCombine && separate.size() > 1)
+            {
+                try
+                {
+                    combined = Pattern.compile(combinedRegex.toString());
+                    separate = null;
+                } catch (PatternSyntaxException e)
+                {
+                    //Some inline flags (such as comments) do not survive merging. Keep patterns separate then.
+                }
+            }
+        }
+
+        /**
+         * @return true if this filter contains any entries (including invalid ones).
+         */
+        public boolean hasEntries()
+        {
+            return !source.isEmpty();
+        }
+
+        /**
+         * @return true if any of the regexes can be found in the text.
+         */
+        public boolean find(String text)
+        {
+            if (combined != null)
+                return combined.matcher(text).find();
+
+            for (Pattern pattern : separate)
+            {
+                if (pattern.matcher(text).find())
+                    return true;
+            }
+
+            return false;
+        }
+
+        private static boolean hasUnmergeableEscape(String regex)
+        {
+            for (int i = 0; i < regex.length() - 1; i++)
+            {
+                if (regex.charAt(i) != '\\')
+                    continue;
+
+                char next = regex.charAt(i + 1);
+                if (Character.isDigit(next) || next == 'k' || next == 'Q')
+                    return true;
+
+                i++;
+            }
+
+            return false;
+        }
+    }
+}
@@ -108,7 +108,7 @@ public class WearVoiceAction extends NotificationAction
             firstItemIsVoice = true;
         }
 
-        ArrayList<String> userProvidedChoices = (ArrayList<String>) notification.source.getSettingStorage(service).getStringList(AppSetting.CANNED_RESPONSES);
+        List<String> userProvidedChoices = notification.source.getSettingStorage(service).getStringList(AppSetting.CANNED_RESPONSES);
         if (userProvidedChoices != null)
         {
             for (String choice : userProvidedChoices)
@@ -0,0 +1,258 @@
+package com.matejdro.pebblenotificationcenter.pebble;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.os.Handler;
+import android.util.SparseArray;
+import com.getpebble.android.kit.PebbleKit;
+import com.getpebble.android.kit.util.PebbleDictionary;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.UUID;
+import timber.log.Timber;
+
+/**
+ * Sends AppMessages to the watchapp while allowing several transactions to be in flight at once.
+ *
+ * Every message gets its own transaction ID and stays in the window until Pebble app reports ACK or NACK for it.
+ * NACKed and timed out messages are retried a few times and reported to the {@link DeliveryListener} when they still
+ * fail. While message is being retried, nothing new is sent, so later messages can not overtake it any further.
+ * Messages beyond the window size wait in the queue.
+ */
+public class AppMessageSender
+{
+    public static final int DEFAULT_WINDOW_SIZE = 3;
+    public static final int MAX_WINDOW_SIZE = 16;
+
+    private static final int MAX_RETRIES = 3;
+    private static final int RETRY_DELAY = 300;
+    private static final int TRANSACTION_TIMEOUT = 10000;
+
+    private Context context;
+    private UUID appUUID;
+    private Handler handler;
+    private int windowSize;
+
+    private Queue<PebbleDictionary> waitingQueue = new LinkedList<PebbleDictionary>();
+    private SparseArray<Transaction> outstandingTransactions = new SparseArray<Transaction>();
+    private int lastTransactionId = 0;
+    //Transaction that is being retried. No new transaction is started until it gets through.
+    private Transaction blockingTransaction;
+
+    private BroadcastReceiver ackReceiver;
+    private BroadcastReceiver nackReceiver;
+    private DeliveryListener deliveryListener;
+
+    public AppMessageSender(Context context, UUID appUUID, int windowSize)
+    {
+        this.context = context;
+        this.appUUID = appUUID;
+        this.windowSize = Math.max(1, Math.min(MAX_WINDOW_SIZE, windowSize));
+
+        handler = new Handler();
+    }
+
+    public void setDeliveryListener(DeliveryListener deliveryListener)
+    {
+        this.deliveryListener = deliveryListener;
+    }
+
+    public void start()
+    {
+        ackReceiver = PebbleKit.registerReceivedAckHandler(context, new PebbleKit.PebbleAckReceiver(appUUID)
+        {
+            @Override
+            public void receiveAck(Context context, int transactionId)
+            {
+                transactionAcked(transactionId);
+            }
+        });
+
+        nackReceiver = PebbleKit.registerReceivedNackHandler(context, new PebbleKit.PebbleNackReceiver(appUUID)
+        {
+            @Override
+            public void receiveNack(Context context, int transactionId)
+            {
+                transactionNacked(transactionId);
+            }
+        });
+    }
+
+    public void stop()
+    {
+        if (ackReceiver != null)
+            context.unregisterReceiver(ackReceiver);
+        if (nackReceiver != null)
+            context.unregisterReceiver(nackReceiver);
+
+        ackReceiver = null;
+        nackReceiver = null;
+
+        clear();
+    }
+
+    /**
+     * Drops all waiting and outstanding messages. Used when watchapp session is reset and old messages would be meaningless.
+     */
+    public void clear()
+    {
+        handler.removeCallbacksAndMessages(null);
+        waitingQueue.clear();
+        outstandingTransactions.clear();
+        blockingTransaction = null;
+    }
+
+    /**
+     * Drops messages that were not sent yet and match the filter. Messages that are already in flight are not affected.
+     */
+    public void removeWaiting(MessageFilter filter)
+    {
+        Iterator<PebbleDictionary> iterator = waitingQueue.iterator();
+        while (iterator.hasNext())
+        {
+            if (filter.matches(iterator.next()))
+                iterator.remove();
+        }
+    }
+
+    public void send(PebbleDictionary data)
+    {
+        waitingQueue.add(data);
+        sendWaitingMessages();
+    }
+
+    public boolean hasFreeSlot()
+    {
+        return outstandingTransactions.size() + waitingQueue.size() < windowSize;
+    }
+
+    private void sendWaitingMessages()
+    {
+        while (blockingTransaction == null && outstandingTransactions.size() < windowSize && !waitingQueue.isEmpty())
+        {
+            Transaction transaction = new Transaction(nextTransactionId(), waitingQueue.poll());
+            outstandingTransactions.put(transaction.id, transaction);
+
+            transmit(transaction);
+        }
+    }
+
+    private int nextTransactionId()
+    {
+        do
+        {
+            lastTransactionId = (lastTransactionId + 1) & 0xFF;
+        }
+        while (outstandingTransactions.get(lastTransactionId) != null);
+
+        return lastTransactionId;
+    }
+
+    private void transmit(Transaction transaction)
+    {
+        Timber.d("Sending transaction %d (%d in flight)", transaction.id, outstandingTransactions.size());
+
+        PebbleKit.sendDataToPebbleWithTransactionId(context, appUUID, transaction.data, transaction.id);
+        handler.postDelayed(transaction, TRANSACTION_TIMEOUT);
+    }
+
+    private void transactionAcked(int transactionId)
+    {
+        Transaction transaction = outstandingTransactions.get(transactionId);
+        if (transaction == null)
+            return;
+
+        finishTransaction(transaction);
+    }
+
+    private void transactionNacked(int transactionId)
+    {
+        Transaction transaction = outstandingTransactions.get(transactionId);
+        if (transaction == null)
+            return;
+
+        Timber.d("Transaction %d NACKed", transactionId);
+        retryOrFail(transaction);
+    }
+
+    private void retryOrFail(final Transaction transaction)
+    {
+        handler.removeCallbacks(transaction);
+
+        if (transaction.retries >= MAX_RETRIES)
+        {
+            Timber.w("Transaction %d failed %d times. Dropping.", transaction.id, transaction.retries + 1);
+            outstandingTransactions.remove(transaction.id);
+            if (blockingTransaction == transaction)
+                blockingTransaction = null;
+
+            //Listener gets a chance to drop waiting messages that depend on the failed one before they are sent
+            if (deliveryListener != null)
+                deliveryListener.onDeliveryFailed(transaction.data);
+
+            sendWaitingMessages();
+            return;
+        }
+
+        transaction.retries++;
+        if (blockingTransaction == null)
+            blockingTransaction = transaction;
+
+        handler.postDelayed(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (outstandingTransactions.get(transaction.id) == transaction)
+                    transmit(transaction);
+            }
+        }, RETRY_DELAY);
+    }
+
+    private void finishTransaction(Transaction transaction)
+    {
+        handler.removeCallbacks(transaction);
+        outstandingTransactions.remove(transaction.id);
+        if (blockingTransaction == transaction)
+            blockingTransaction = null;
+
+        sendWaitingMessages();
+    }
+
+    private class Transaction implements Runnable
+    {
+        private final int id;
+        private final PebbleDictionary data;
+        private int retries = 0;
+
+        private Transaction(int id, PebbleDictionary data)
+        {
+            this.id = id;
+            this.data = data;
+        }
+
+        /**
+         * Timeout. Pebble app did not report anything, so message is handled the same way as NACKed one.
+         */
+        @Override
+        public void run()
+        {
+            Timber.d("Transaction %d timed out", id);
+            retryOrFail(this);
+        }
+    }
+
+    public interface DeliveryListener
+    {
+        /**
+         * Called on the main thread when message was NACKed or timed out on every attempt and was dropped.
+         */
+        void onDeliveryFailed(PebbleDictionary data);
+    }
+
+    public interface MessageFilter
+    {
+        boolean matches(PebbleDictionary data);
+    }
+}
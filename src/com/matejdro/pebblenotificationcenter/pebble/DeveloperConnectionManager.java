@@ -0,0 +1,296 @@
+package com.matejdro.pebblenotificationcenter.pebble;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import timber.log.Timber;
+
+/**
+ * Keeps PebbleDeveloperConnection open without blocking the caller.
+ *
+ * Failed connection attempts are retried with exponential backoff. After several consecutive failures
+ * (Pebble app is not installed or developer connection is disabled) circuit opens and no attempts are made
+ * until it cools down, after which single attempt is allowed again on next {@link #ensureConnected()}.
+ *
+ * All state changes happen on manager's own thread. Manager is shared by the whole process and is never closed:
+ * connection stays open and dropped connection is reopened for the life of the process.
+ */
+public class DeveloperConnectionManager implements PebbleDeveloperConnection.ConnectionListener
+{
+    private static final long CONNECT_TIMEOUT = 5000;
+    private static final long INITIAL_BACKOFF = 1000;
+    private static final long MAX_BACKOFF = 60000;
+    private static final int CIRCUIT_BREAKER_THRESHOLD = 5;
+    private static final long CIRCUIT_OPEN_TIME = 5 * 60 * 1000;
+
+    public enum State
+    {
+        DISCONNECTED,
+        CONNECTING,
+        CONNECTED,
+        WAITING_FOR_RETRY,
+        CIRCUIT_OPEN
+    }
+
+    private final URI uri;
+    private final ScheduledExecutorService executor;
+    private final List<ConnectedListener> connectedListeners = new CopyOnWriteArrayList<ConnectedListener>();
+
+    private volatile State state = State.DISCONNECTED;
+    private volatile PebbleDeveloperConnection connection;
+    private ScheduledFuture<?> pendingTimer;
+    private int consecutiveFailures;
+    private long backoff = INITIAL_BACKOFF;
+    private volatile long circuitOpenTime;
+
+    public DeveloperConnectionManager(URI uri)
+    {
+        this.uri = uri;
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "DeveloperConnectionManager");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts connecting if connection is not open and no attempt is already scheduled. Returns immediately.
+     */
+    public void ensureConnected()
+    {
+        if (state == State.CONNECTED || state == State.CONNECTING || state == State.WAITING_FOR_RETRY)
+            return;
+
+        execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (state == State.DISCONNECTED)
+                {
+                    connect();
+                }
+                else if (state == State.CIRCUIT_OPEN && System.currentTimeMillis() - circuitOpenTime >= CIRCUIT_OPEN_TIME)
+                {
+                    Timber.d("Developer connection circuit half-open, trying again");
+
+                    //One more failure opens the circuit again
+                    consecutiveFailures = CIRCUIT_BREAKER_THRESHOLD - 1;
+                    connect();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return open connection or null if it is not connected at the moment.
+     */
+    public PebbleDeveloperConnection getConnection()
+    {
+        PebbleDeveloperConnection connection = this.connection;
+        if (state != State.CONNECTED || connection == null || !connection.isOpen())
+            return null;
+
+        return connection;
+    }
+
+    /**
+     * Blocks until connection is open. Must not be called on the manager thread.
+     *
+     * @return open connection or null if it could not be opened in time or circuit is open.
+     */
+    public PebbleDeveloperConnection waitForConnection(long timeout) throws InterruptedException
+    {
+        PebbleDeveloperConnection connection = getConnection();
+        if (connection != null)
+            return connection;
+
+        if (state == State.CIRCUIT_OPEN && System.currentTimeMillis() - circuitOpenTime < CIRCUIT_OPEN_TIME)
+            return null;
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        ConnectedListener listener = new ConnectedListener()
+        {
+            @Override
+            public void onDeveloperConnectionConnected(PebbleDeveloperConnection connection)
+            {
+                latch.countDown();
+            }
+        };
+
+        addConnectedListener(listener);
+        try
+        {
+            //Connection might have opened before listener was added
+            connection = getConnection();
+            if (connection != null)
+                return connection;
+
+            ensureConnected();
+            latch.await(timeout, TimeUnit.MILLISECONDS);
+            return getConnection();
+        }
+        finally
+        {
+            removeConnectedListener(listener);
+        }
+    }
+
+    public State getState()
+    {
+        return state;
+    }
+
+    public void addConnectedListener(ConnectedListener listener)
+    {
+        connectedListeners.add(listener);
+    }
+
+    public void removeConnectedListener(ConnectedListener listener)
+    {
+        connectedListeners.remove(listener);
+    }
+
+    @Override
+    public void onConnectionOpened(final PebbleDeveloperConnection openedConnection)
+    {
+        execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (openedConnection != connection)
+                    return;
+
+                cancelTimer();
+                state = State.CONNECTED;
+                consecutiveFailures = 0;
+                backoff = INITIAL_BACKOFF;
+
+                Timber.d("Developer connection open");
+
+                for (ConnectedListener listener : connectedListeners)
+                    listener.onDeveloperConnectionConnected(openedConnection);
+            }
+        });
+    }
+
+    @Override
+    public void onConnectionClosed(final PebbleDeveloperConnection closedConnection)
+    {
+        execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (closedConnection != connection)
+                    return;
+
+                cancelTimer();
+                connection = null;
+
+                if (state == State.CONNECTED)
+                {
+                    //Connection that worked before was dropped (Pebble app restarted?). Reconnect soon.
+                    Timber.d("Developer connection dropped");
+                    scheduleRetry();
+                    return;
+                }
+
+                connectionFailed();
+            }
+        });
+    }
+
+    private void connect()
+    {
+        state = State.CONNECTING;
+
+        final PebbleDeveloperConnection newConnection = new PebbleDeveloperConnection(uri, this);
+        connection = newConnection;
+        newConnection.connect();
+
+        //Socket connect is limited by the OS, but handshake can hang forever if something else listens on the port
+        pendingTimer = executor.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (newConnection != connection || state != State.CONNECTING)
+                    return;
+
+                Timber.d("Developer connection attempt timed out");
+                connection = null;
+                newConnection.close();
+                connectionFailed();
+            }
+        }, CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private void connectionFailed()
+    {
+        consecutiveFailures++;
+        if (consecutiveFailures >= CIRCUIT_BREAKER_THRESHOLD)
+        {
+            Timber.w("Developer connection failed %d times, giving up for %d s", consecutiveFailures, CIRCUIT_OPEN_TIME / 1000);
+
+            state = State.CIRCUIT_OPEN;
+            circuitOpenTime = System.currentTimeMillis();
+            backoff = INITIAL_BACKOFF;
+            return;
+        }
+
+        scheduleRetry();
+        backoff = Math.min(MAX_BACKOFF, backoff * 2);
+    }
+
+    private void scheduleRetry()
+    {
+        Timber.d("Retrying developer connection in %d ms", backoff);
+
+        state = State.WAITING_FOR_RETRY;
+        pendingTimer = executor.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (state == State.WAITING_FOR_RETRY)
+                    connect();
+            }
+        }, backoff, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelTimer()
+    {
+        if (pendingTimer != null)
+        {
+            pendingTimer.cancel(false);
+            pendingTimer = null;
+        }
+    }
+
+    private void execute(Runnable runnable)
+    {
+        executor.execute(runnable);
+    }
+
+    public interface ConnectedListener
+    {
+        /**
+         * Called on the manager thread.
+         */
+        void onDeveloperConnectionConnected(PebbleDeveloperConnection connection);
+    }
+}
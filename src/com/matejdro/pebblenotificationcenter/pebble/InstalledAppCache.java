@@ -0,0 +1,139 @@
+package com.matejdro.pebblenotificationcenter.pebble;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Persisted list of apps installed on the watch, so app list can be displayed without waiting for the watch.
+ * List is revalidated by comparing UUIDs only, full list (with names) is only fetched when they differ
+ * or when it was not fetched for a day, so renamed apps are eventually picked up.
+ */
+public class InstalledAppCache
+{
+    private static final String PREFERENCES_NAME = "installed_pebble_apps";
+    private static final String KEY_APPS = "apps";
+    private static final String KEY_UPDATE_TIME = "updateTime";
+    private static final String KEY_FULL_UPDATE_TIME = "fullUpdateTime";
+
+    //Cached list is not revalidated again if it was checked that recently
+    private static final long REVALIDATE_INTERVAL = 10 * 60 * 1000;
+    //Names are not covered by UUID revalidation, so whole list is fetched again after that time
+    private static final long FULL_REFRESH_INTERVAL = 24 * 60 * 60 * 1000;
+
+    private final SharedPreferences preferences;
+    private LinkedHashMap<UUID, String> apps;
+
+    public InstalledAppCache(Context context)
+    {
+        preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        apps = parse(preferences.getString(KEY_APPS, null));
+    }
+
+    /**
+     * @return installed apps from the last refresh or null if list was never loaded.
+     */
+    public List<PebbleApp> getApps()
+    {
+        if (apps == null)
+            return null;
+
+        List<PebbleApp> list = new ArrayList<PebbleApp>(apps.size());
+        for (Map.Entry<UUID, String> entry : apps.entrySet())
+            list.add(new PebbleApp(entry.getValue(), entry.getKey()));
+
+        return list;
+    }
+
+    public boolean needsRevalidation()
+    {
+        return apps == null || System.currentTimeMillis() - preferences.getLong(KEY_UPDATE_TIME, 0) > REVALIDATE_INTERVAL;
+    }
+
+    /**
+     * @return true if cached list contains exactly the same apps and full list was fetched recently enough.
+     * Cache is marked as revalidated in that case.
+     */
+    public boolean revalidate(List<UUID> installedUuids)
+    {
+        if (System.currentTimeMillis() - preferences.getLong(KEY_FULL_UPDATE_TIME, 0) > FULL_REFRESH_INTERVAL)
+            return false;
+
+        if (apps == null || apps.size() != installedUuids.size() || !apps.keySet().equals(new HashSet<UUID>(installedUuids)))
+            return false;
+
+        preferences.edit().putLong(KEY_UPDATE_TIME, System.currentTimeMillis()).apply();
+        return true;
+    }
+
+    /**
+     * Replaces cached list.
+     *
+     * @return true if new list differs from the cached one.
+     */
+    public boolean update(List<PebbleApp> installedApps)
+    {
+        LinkedHashMap<UUID, String> newApps = new LinkedHashMap<UUID, String>(installedApps.size());
+        for (PebbleApp app : installedApps)
+            newApps.put(app.getUuid(), app.getName());
+
+        boolean changed = apps == null || !equalsInOrder(apps, newApps);
+        apps = newApps;
+
+        SharedPreferences.Editor editor = preferences.edit();
+        if (changed)
+            editor.putString(KEY_APPS, serialize(newApps));
+        long now = System.currentTimeMillis();
+        editor.putLong(KEY_UPDATE_TIME, now);
+        editor.putLong(KEY_FULL_UPDATE_TIME, now);
+        editor.apply();
+
+        return changed;
+    }
+
+    private static boolean equalsInOrder(LinkedHashMap<UUID, String> a, LinkedHashMap<UUID, String> b)
+    {
+        return a.equals(b) && new ArrayList<UUID>(a.keySet()).equals(new ArrayList<UUID>(b.keySet()));
+    }
+
+    private static String serialize(Map<UUID, String> apps)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<UUID, String> entry : apps.entrySet())
+        {
+            builder.append(entry.getKey()).append('\t');
+            builder.append(entry.getValue().replace('\t', ' ').replace('\n', ' ')).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    private static LinkedHashMap<UUID, String> parse(String serialized)
+    {
+        if (serialized == null)
+            return null;
+
+        LinkedHashMap<UUID, String> apps = new LinkedHashMap<UUID, String>();
+        for (String line : serialized.split("\n"))
+        {
+            int separator = line.indexOf('\t');
+            if (separator < 0)
+                continue;
+
+            try
+            {
+                apps.put(UUID.fromString(line.substring(0, separator)), line.substring(separator + 1));
+            } catch (IllegalArgumentException e)
+            {
+            }
+        }
+
+        return apps;
+    }
+}
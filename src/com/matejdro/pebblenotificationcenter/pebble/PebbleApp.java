@@ -1,6 +1,7 @@
 package com.matejdro.pebblenotificationcenter.pebble;
 
 import android.content.Context;
+import com.getpebble.android.kit.Constants;
 import com.matejdro.pebblenotificationcenter.R;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -68,7 +69,7 @@ public class PebbleApp
 
     public static List<PebbleApp> getSystemApps(Context context)
     {
-        List<PebbleApp> apps = new ArrayList<PebbleApp>(9);
+        List<PebbleApp> apps = new ArrayList<PebbleApp>(11);
 
         if (context == null)
             return apps;
@@ -82,6 +83,8 @@ public class PebbleApp
         apps.add(new PebbleApp(context.getString(R.string.PebbleWatchfaceSimplicity), UUID.fromString("6bf6215b-c97f-409e-8c31-4f55657222b4")));
         apps.add(new PebbleApp(context.getString(R.string.PebbleWatchfaceAnalog), UUID.fromString("55cb7c75-8a35-4487-90a4-913f1fa67601")));
         apps.add(new PebbleApp(context.getString(R.string.PebbleWatchfaceText), UUID.fromString("7c652eb9-26d6-442c-9868-a436797de205")));
+        apps.add(new PebbleApp("Sports app", Constants.SPORTS_UUID));
+        apps.add(new PebbleApp("Golf app", Constants.GOLF_UUID));
 
         return apps;
     }
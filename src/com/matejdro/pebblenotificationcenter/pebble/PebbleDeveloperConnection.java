@@ -1,8 +1,6 @@
 package com.matejdro.pebblenotificationcenter.pebble;
 
-import android.os.Handler;
-import android.os.Looper;
-import com.getpebble.android.kit.Constants;
+import android.os.SystemClock;
 import com.matejdro.pebblenotificationcenter.util.TextUtil;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
@@ -12,29 +10,70 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
 import org.java_websocket.handshake.ServerHandshake;
 
 public class PebbleDeveloperConnection extends WebSocketClient
 {
-    private List<DeveloperConnectionResult> waitingTasks = Collections.synchronizedList(new LinkedList<DeveloperConnectionResult>());
+    public static final String DEFAULT_URI = "ws://127.0.0.1:9000";
+
+    private static final long REQUEST_TIMEOUT = 5000;
+
+    //Cached running app is refreshed in background when it is older than that. Watch also reports app changes by itself.
+    private static final long RUNNING_APP_TTL = 30000;
+
+    //Shared by all connections. Only arms and fires request timeouts, so one thread is enough.
+    private static final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "DeveloperConnectionTimeout");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private volatile UUID cachedRunningApp;
+    private volatile long cachedRunningAppTime;
+
+    private final EnumMap<DeveloperConnectionTaskType, List<DeveloperConnectionResult<?>>> waitingTasks = new EnumMap<DeveloperConnectionTaskType, List<DeveloperConnectionResult<?>>>(DeveloperConnectionTaskType.class);
+
+    private final ConnectionListener connectionListener;
 
     public PebbleDeveloperConnection() throws URISyntaxException
     {
-        super(new URI("ws://127.0.0.1:9000"));
+        this(new URI(DEFAULT_URI), null);
+    }
+
+    public PebbleDeveloperConnection(URI uri, ConnectionListener connectionListener)
+    {
+        super(uri);
+        this.connectionListener = connectionListener;
     }
 
     @Override
     public void onOpen(ServerHandshake handshakedata)
     {
+        requestCurrentRunningApp();
+
+        if (connectionListener != null)
+            connectionListener.onConnectionOpened(this);
     }
 
     @Override
@@ -56,6 +95,7 @@ public class PebbleDeveloperConnection extends WebSocketClient
                 if (cmd == 7) //UUID of the active app
                 {
                     UUID receivedUUID = new UUID(bytes.getLong(), bytes.getLong());
+                    updateCachedRunningApp(receivedUUID);
                     completeWaitingTasks(DeveloperConnectionTaskType.GET_CURRENT_RUNNING_APP, receivedUUID);
                 }
                 else if (cmd == 1) //List of all installed apps
@@ -70,12 +110,39 @@ public class PebbleDeveloperConnection extends WebSocketClient
                 }
 
             }
+            else if (endpoint == 52) //APP_RUN_STATE
+            {
+                int cmd = bytes.get();
+                if (cmd == 1 && bytes.remaining() >= 16) //App started
+                {
+                    updateCachedRunningApp(new UUID(bytes.getLong(), bytes.getLong()));
+                }
+                else if (cmd == 2) //App stopped. Watch does not say what runs next, so ask.
+                {
+                    cachedRunningAppTime = 0;
+                    requestCurrentRunningApp();
+                }
+            }
         }
     }
 
     @Override
     public void onClose(int code, String reason, boolean remote)
     {
+        //Nobody will answer anymore, so waiting requests can fail right away instead of timing out
+        List<DeveloperConnectionResult<?>> tasks = new ArrayList<DeveloperConnectionResult<?>>();
+        synchronized (waitingTasks)
+        {
+            for (List<DeveloperConnectionResult<?>> typeTasks : waitingTasks.values())
+                tasks.addAll(typeTasks);
+            waitingTasks.clear();
+        }
+
+        for (DeveloperConnectionResult<?> task : tasks)
+            task.cancel(false);
+
+        if (connectionListener != null)
+            connectionListener.onConnectionClosed(this);
     }
 
     @Override
@@ -86,49 +153,73 @@ public class PebbleDeveloperConnection extends WebSocketClient
 
     public UUID getCurrentRunningApp()
     {
-        if (!isOpen())
+        Future<UUID> result = requestCurrentRunningApp();
+        if (result == null)
             return null;
 
-        DeveloperConnectionResult<UUID> result = new DeveloperConnectionResult(DeveloperConnectionTaskType.GET_CURRENT_RUNNING_APP);
-        waitingTasks.add(result);
+        return getResult(result);
+    }
+
+    /**
+     * Returns last known running app without waiting for the watch. When cached value is too old, new one is requested in background.
+     *
+     * @return UUID of the app that was last known to run on the watch or null if it is not known yet.
+     */
+    public UUID getCachedRunningApp()
+    {
+        if (SystemClock.elapsedRealtime() - cachedRunningAppTime > RUNNING_APP_TTL || cachedRunningApp == null)
+            requestCurrentRunningApp();
+
+        return cachedRunningApp;
+    }
 
+    private void updateCachedRunningApp(UUID uuid)
+    {
+        cachedRunningApp = uuid;
+        cachedRunningAppTime = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * @return result that will contain UUID of the app that is currently running on the watch or null if connection is not open.
+     */
+    public Future<UUID> requestCurrentRunningApp()
+    {
         //0x01 = CMD (PHONE_TO_WATCH)
         //0x00 0x01 = Data length (short) - 1
         //0x17 0x70 = Endpoint (6000 - APP_MANAGER)
         //0x07 = Data (7)
         byte[] requestCurrentApp = new byte[]{0x1, 0x0, 0x1, 0x17, 0x70, 0x7};
-        send(requestCurrentApp);
-
-        return result.get(5, TimeUnit.SECONDS);
+        return request(DeveloperConnectionTaskType.GET_CURRENT_RUNNING_APP, requestCurrentApp);
     }
 
+    /**
+     * @return apps installed on the watch. Built-in apps are not included.
+     */
     public List<PebbleApp> getInstalledPebbleApps()
     {
-        if (!isOpen())
-            return null;
-
-        DeveloperConnectionResult<List<PebbleApp>> resultAppMeta = new DeveloperConnectionResult(DeveloperConnectionTaskType.GET_ALL_INSTALLED_APP_META);
-        DeveloperConnectionResult<List<UUID>> resultAppUUID = new DeveloperConnectionResult(DeveloperConnectionTaskType.GET_ALL_INSTALLED_APP_UUID);
-
-        waitingTasks.add(resultAppMeta);
-        waitingTasks.add(resultAppUUID);
-
-
         //0x01 = CMD (PHONE_TO_WATCH)
         //0x00 0x01 = Data length (short) - 1
         //0x17 0x70 = Endpoint (6000 - APP_MANAGER)
         //0x01 = Data (1 = get apps meta, 5 = get apps UUID)
-        byte[] request = new byte[]{0x1, 0x0, 0x1, 0x17, 0x70, 0x1};
-        send(request);
-        request = new byte[]{0x1, 0x0, 0x1, 0x17, 0x70, 0x5};
-        send(request);
+        Future<List<PebbleApp>> resultAppMeta = request(DeveloperConnectionTaskType.GET_ALL_INSTALLED_APP_META, new byte[]{0x1, 0x0, 0x1, 0x17, 0x70, 0x1});
+        if (resultAppMeta == null)
+            return null;
 
+        Future<List<UUID>> resultAppUUID = request(DeveloperConnectionTaskType.GET_ALL_INSTALLED_APP_UUID, new byte[]{0x1, 0x0, 0x1, 0x17, 0x70, 0x5});
+        if (resultAppUUID == null)
+        {
+            resultAppMeta.cancel(false);
+            return null;
+        }
 
-        List<PebbleApp> appList = resultAppMeta.get(5, TimeUnit.SECONDS);
+        List<PebbleApp> appList = getResult(resultAppMeta);
         if (appList == null)
+        {
+            resultAppUUID.cancel(false);
             return null;
+        }
 
-        List<UUID> uuidList = resultAppUUID.get(5, TimeUnit.SECONDS);
+        List<UUID> uuidList = getResult(resultAppUUID);
         if (uuidList == null)
             return null;
 
@@ -137,12 +228,21 @@ public class PebbleDeveloperConnection extends WebSocketClient
             appList.get(i).uuid = uuidList.get(i);
         }
 
-        appList.add(new PebbleApp("Sports app", Constants.SPORTS_UUID));
-        appList.add(new PebbleApp("Golf app", Constants.GOLF_UUID));
-
         return appList;
     }
 
+    /**
+     * @return UUIDs of apps installed on the watch (without names, which makes it much smaller than {@link #getInstalledPebbleApps()}).
+     */
+    public List<UUID> getInstalledPebbleAppUuids()
+    {
+        Future<List<UUID>> result = request(DeveloperConnectionTaskType.GET_ALL_INSTALLED_APP_UUID, new byte[]{0x1, 0x0, 0x1, 0x17, 0x70, 0x5});
+        if (result == null)
+            return null;
+
+        return getResult(result);
+    }
+
     public void sendNotification(String title, String message)
     {
         if (!isOpen())
@@ -178,127 +278,202 @@ public class PebbleDeveloperConnection extends WebSocketClient
         send(stream.toByteArray());
     }
 
-    private void completeWaitingTasks(DeveloperConnectionTaskType type, Object result)
+    /**
+     * Sends request packet unless request of the same type is already waiting for the answer, since watch
+     * answers with the same data to all of them.
+     *
+     * @return result that is completed by the answer, or with null after timeout or when connection closes.
+     * Null if connection is not open.
+     */
+    private <T> DeveloperConnectionResult<T> request(DeveloperConnectionTaskType type, byte[] packet)
     {
-        Iterator<DeveloperConnectionResult> iterator = waitingTasks.iterator();
-        while (iterator.hasNext())
+        if (!isOpen())
+            return null;
+
+        DeveloperConnectionResult<T> result = new DeveloperConnectionResult<T>(type);
+
+        boolean alreadyRequested;
+        synchronized (waitingTasks)
         {
-            DeveloperConnectionResult task = iterator.next();
-            if (task.getType() != type)
-                continue;
+            List<DeveloperConnectionResult<?>> typeTasks = waitingTasks.get(type);
+            if (typeTasks == null)
+            {
+                typeTasks = new ArrayList<DeveloperConnectionResult<?>>(2);
+                waitingTasks.put(type, typeTasks);
+            }
 
-            task.finished(result);
-            iterator.remove();
+            alreadyRequested = !typeTasks.isEmpty();
+            typeTasks.add(result);
+        }
+
+        result.armTimeout(REQUEST_TIMEOUT);
+
+        if (!alreadyRequested)
+        {
+            try
+            {
+                send(packet);
+            } catch (WebsocketNotConnectedException e)
+            {
+                result.cancel(false);
+                return null;
+            }
         }
+
+        return result;
     }
 
-    private class DeveloperConnectionResult<T>
+    private static <T> T getResult(Future<T> result)
     {
-        private Handler timeoutCallbackHandler;
-        private Thread timeoutThread;
-        private T result;
-        private CountDownLatch handlerReadyLatch;
-        private CountDownLatch waitingLatch;
-        private boolean isDone;
-        private DeveloperConnectionTaskType type;
+        try
+        {
+            return result.get();
+        } catch (InterruptedException e)
+        {
+            result.cancel(false);
+        } catch (ExecutionException e)
+        {
+        }
 
-        private DeveloperConnectionResult(DeveloperConnectionTaskType type)
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void completeWaitingTasks(DeveloperConnectionTaskType type, Object result)
+    {
+        List<DeveloperConnectionResult<?>> tasks;
+        synchronized (waitingTasks)
         {
-            handlerReadyLatch = new CountDownLatch(1);
-            timeoutThread = new Thread()
-            {
-                @Override
-                public void run()
-                {
-                    Looper.prepare();
+            tasks = waitingTasks.remove(type);
+        }
 
-                    timeoutCallbackHandler = new Handler();
-                    handlerReadyLatch.countDown();
+        if (tasks == null)
+            return;
 
-                    Looper.loop();
-                }
-            };
-            timeoutThread.start();
+        for (DeveloperConnectionResult task : tasks)
+            task.finished(result);
+    }
+
+    private void removeWaitingTask(DeveloperConnectionResult<?> task)
+    {
+        synchronized (waitingTasks)
+        {
+            List<DeveloperConnectionResult<?>> typeTasks = waitingTasks.get(task.type);
+            if (typeTasks != null)
+                typeTasks.remove(task);
+        }
+    }
+
+    /**
+     * Result of one request. Cancelled and timed out requests complete with null.
+     */
+    private class DeveloperConnectionResult<T> implements Future<T>, Runnable
+    {
+        private final DeveloperConnectionTaskType type;
+        private final CountDownLatch waitingLatch = new CountDownLatch(1);
+        private ScheduledFuture<?> timeout;
+
+        private volatile T result;
+        private volatile boolean isDone;
+        private volatile boolean isCancelled;
 
-            waitingLatch = new CountDownLatch(1);
-            isDone = false;
+        private DeveloperConnectionResult(DeveloperConnectionTaskType type)
+        {
             this.type = type;
         }
 
-        public DeveloperConnectionTaskType getType()
+        private void armTimeout(long timeoutMs)
         {
-            return type;
+            ScheduledFuture<?> timeout = timeoutScheduler.schedule(this, timeoutMs, TimeUnit.MILLISECONDS);
+            synchronized (this)
+            {
+                if (isDone)
+                    timeout.cancel(false);
+                else
+                    this.timeout = timeout;
+            }
         }
 
-        protected void finished(T result)
+        private boolean finished(T result)
         {
-            isDone = true;
-            this.result = result;
-            timeoutCallbackHandler.post(new Runnable()
+            synchronized (this)
             {
-                @Override
-                public void run()
-                {
-                    Looper.myLooper().quit();
-                }
-            });
-            timeoutCallbackHandler.removeCallbacksAndMessages(null);
+                if (isDone)
+                    return false;
+
+                this.result = result;
+                isDone = true;
+
+                if (timeout != null)
+                    timeout.cancel(false);
+            }
 
             waitingLatch.countDown();
+            return true;
         }
 
-        public void cancel()
+        /**
+         * Timeout
+         */
+        @Override
+        public void run()
         {
+            removeWaitingTask(this);
             finished(null);
         }
 
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            removeWaitingTask(this);
+            if (!finished(null))
+                return false;
+
+            isCancelled = true;
+            return true;
+        }
+
+        @Override
         public boolean isCancelled()
         {
-            return isDone && result == null;
+            return isCancelled;
         }
 
+        @Override
         public boolean isDone()
         {
             return isDone;
         }
 
-        public T get()
+        @Override
+        public T get() throws InterruptedException
         {
-            try
-            {
-                waitingLatch.await();
-            } catch (InterruptedException e)
-            {
-                e.printStackTrace();
-            }
-
+            waitingLatch.await();
             return result;
         }
 
-
-        public T get(long l, TimeUnit timeUnit)
+        /**
+         * @throws TimeoutException if result is not available before specified time.
+         */
+        @Override
+        public T get(long l, TimeUnit timeUnit) throws InterruptedException, TimeoutException
         {
-            try
-            {
-                handlerReadyLatch.await();
-            } catch (InterruptedException e)
-            {
-                e.printStackTrace();
-            }
+            if (!waitingLatch.await(l, timeUnit))
+                throw new TimeoutException();
 
-            timeoutCallbackHandler.postDelayed(new Runnable()
-            {
-                @Override
-                public void run()
-                {
-                    cancel();
-                }
-            }, timeUnit.toMillis(l));
-
-            return get();
+            return result;
         }
     }
 
+    /**
+     * Called on the connection thread. Closed is also called when connection could not be opened at all.
+     */
+    public interface ConnectionListener
+    {
+        void onConnectionOpened(PebbleDeveloperConnection connection);
+        void onConnectionClosed(PebbleDeveloperConnection connection);
+    }
+
     private static enum DeveloperConnectionTaskType
     {
         GET_CURRENT_RUNNING_APP,
@@ -12,6 +12,18 @@ import com.matejdro.pebblenotificationcenter.R;
 public class WatchappHandler {
     public static final int SUPPORTED_PROTOCOL = 18;
 
+    /**
+     * Optional features that watchapp announces in init packet (Pebble->Phone packet 0) and phone announces in config.
+     */
+    public static final int CAPABILITY_TEXT_PUSH = 0x01;
+    public static final int CAPABILITY_LIST_PAGING = 0x02;
+    public static final int PHONE_CAPABILITIES = CAPABILITY_TEXT_PUSH | CAPABILITY_LIST_PAGING;
+
+    /**
+     * Smallest inbox size that every watchapp version supports. Used when watchapp does not report its own.
+     */
+    public static final int DEFAULT_INBOX_SIZE = 124;
+
     public static boolean isFirstRun(SharedPreferences settings)
     {
         return settings.getBoolean("FirstRun", false);
@@ -16,19 +16,21 @@ import android.widget.ListView;
 import android.widget.Spinner;
 import android.widget.TextView;
 import com.matejdro.pebblenotificationcenter.DataReceiver;
+import com.matejdro.pebblenotificationcenter.PebbleNotificationCenter;
 import com.matejdro.pebblenotificationcenter.PebbleTalkerService;
 import com.matejdro.pebblenotificationcenter.R;
+import com.matejdro.pebblenotificationcenter.pebble.InstalledAppCache;
 import com.matejdro.pebblenotificationcenter.pebble.PebbleApp;
 import com.matejdro.pebblenotificationcenter.pebble.PebbleDeveloperConnection;
 import com.matejdro.pebblenotificationcenter.util.PreferencesUtil;
-import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
+import java.util.UUID;
 
 public class PebbleAppListFragment extends Fragment {
+    private static final long CONNECTION_TIMEOUT = 10000;
 
 	private static SharedPreferences preferences;
 	private static SharedPreferences.Editor editor;
@@ -36,6 +38,7 @@ public class PebbleAppListFragment extends Fragment {
 	private ListView listView;
 	private AppListAdapter listViewAdapter;
     private List<PebbleApp> apps;
+    private InstalledAppCache appCache;
 
 
 	private boolean showOnResume = false;
@@ -65,8 +68,19 @@ public class PebbleAppListFragment extends Fragment {
 
 		preferences = PreferenceManager.getDefaultSharedPreferences(getActivity());
 		editor = preferences.edit();
-		
-		new AppLoadingTask().execute();
+
+		appCache = new InstalledAppCache(getActivity());
+
+		//Display last known list right away and only refresh it when watch reports something else
+		List<PebbleApp> cachedApps = appCache.getApps();
+		if (cachedApps != null)
+		{
+			apps = buildAppList(getActivity(), cachedApps);
+			showOnResume = true;
+		}
+
+		if (cachedApps == null || appCache.needsRevalidation())
+			new AppLoadingTask().execute();
 
 		return inflater.inflate(R.layout.fragment_pebble_app_list, null);
 	}
@@ -142,7 +156,13 @@ public class PebbleAppListFragment extends Fragment {
 
 		@Override
 		public long getItemId(int position) {
-			return position;
+			UUID uuid = apps.get(position).getUuid();
+			return uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+		}
+
+		@Override
+		public boolean hasStableIds() {
+			return true;
 		}
 
 		@Override
@@ -192,74 +212,116 @@ public class PebbleAppListFragment extends Fragment {
 		}
 	}
 
-	private class AppLoadingTask extends AsyncTask<Void, Void, Void>
+	/**
+	 * Revalidates cached app list with the watch. Result is null if list is unchanged or could not be loaded.
+	 */
+	private class AppLoadingTask extends AsyncTask<Void, Void, List<PebbleApp>>
 	{
-		@Override
-		protected void onPreExecute()
-        {
-        }
+		private boolean failed = false;
 
 		@Override
-		protected Void doInBackground(Void... params) {
-			if (getActivity() == null)
+		protected List<PebbleApp> doInBackground(Void... params) {
+			Context context = getActivity();
+			if (context == null)
 				return null;
 
-            Context context = getActivity();
-
-            PebbleDeveloperConnection connection = null;
             try
             {
-                connection = new PebbleDeveloperConnection();
-                connection.connectBlocking();
-
-            } catch (URISyntaxException e)
-            {
-                e.printStackTrace();
-            } catch (InterruptedException e)
-            {
-                e.printStackTrace();
-            }
-
-            apps = connection.getInstalledPebbleApps();
-            if (apps != null)
-            {
-                //Remove Notification Center from the list
-                Iterator<PebbleApp> iterator = apps.iterator();
-                while (iterator.hasNext())
+                PebbleDeveloperConnection connection = PebbleNotificationCenter.getDeveloperConnectionManager().waitForConnection(CONNECTION_TIMEOUT);
+                if (connection == null)
                 {
-                    PebbleApp app = iterator.next();
-                    if (app.getUuid().equals(DataReceiver.pebbleAppUUID))
-                        iterator.remove();
+                    failed = true;
+                    return null;
                 }
 
-                apps.addAll(PebbleApp.getSystemApps(context));
-
-                Collections.sort(apps, new PebbleAppComparator());
-
-                PebbleApp otherApp = new PebbleApp(context.getString(R.string.PebbleAppsOther), PebbleTalkerService.UNKNOWN_UUID);
-                apps.add(otherApp);
+                //Only UUIDs are compared at first, since they are much cheaper to get than the whole list.
+                if (appCache.getApps() != null)
+                {
+                    List<UUID> installedUuids = connection.getInstalledPebbleAppUuids();
+                    if (installedUuids != null && appCache.revalidate(installedUuids))
+                        return null;
+                }
 
-                for (PebbleApp app : apps)
+                List<PebbleApp> installedApps = connection.getInstalledPebbleApps();
+                if (installedApps == null)
                 {
-                    app.setNotificationMode(PreferencesUtil.getPebbleAppNotificationMode(preferences, app.getUuid()));
+                    failed = true;
+                    return null;
                 }
+
+                if (!appCache.update(installedApps))
+                    return null;
+
+                return buildAppList(context, installedApps);
+            } catch (InterruptedException e)
+            {
+                e.printStackTrace();
             }
 
+            failed = true;
 			return null;
 		}
 
 		@Override
-		protected void onPostExecute(Void result) {
+		protected void onPostExecute(List<PebbleApp> result) {
             if (getActivity() == null || !isResumed())
+            {
+                if (result != null)
+                {
+                    apps = result;
+                    showOnResume = true;
+                }
+                else if (failed && apps.isEmpty())
+                {
+                    error = true;
+                }
                 return;
+            }
 
-            if (apps == null)
+            if (result != null)
+            {
+                apps = result;
+                if (listViewAdapter != null)
+                    listViewAdapter.notifyDataSetChanged();
+                else
+                    showList();
+            }
+            else if (failed && apps.isEmpty())
+            {
                 showError();
-            else
-                showList();
+            }
 		}
 	}
 
+	/**
+	 * @return list of all apps that are displayed (installed apps + system apps + other), sorted by name and with notification modes loaded.
+	 */
+	private static List<PebbleApp> buildAppList(Context context, List<PebbleApp> installedApps)
+	{
+		List<PebbleApp> apps = new ArrayList<PebbleApp>(installedApps.size() + 12);
+
+		//Remove Notification Center from the list
+		for (PebbleApp app : installedApps)
+		{
+			if (!app.getUuid().equals(DataReceiver.pebbleAppUUID))
+				apps.add(app);
+		}
+
+		apps.addAll(PebbleApp.getSystemApps(context));
+
+		Collections.sort(apps, new PebbleAppComparator());
+
+		PebbleApp otherApp = new PebbleApp(context.getString(R.string.PebbleAppsOther), PebbleTalkerService.UNKNOWN_UUID);
+		apps.add(otherApp);
+
+		for (PebbleApp app : apps)
+		{
+			app.setNotificationMode(PreferencesUtil.getPebbleAppNotificationMode(preferences, app.getUuid()));
+		}
+
+		return apps;
+	}
+
 	private static class PebbleAppComparator implements Comparator<PebbleApp>
 	{
 
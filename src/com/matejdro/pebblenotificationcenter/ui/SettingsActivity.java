@@ -53,6 +53,14 @@ public class SettingsActivity extends PreferenceActivity {
         timeoutPreference.getEditText().setInputType(InputType.TYPE_CLASS_NUMBER);
         timeoutPreference = (EditTextPreference) findPreference("periodicVibrationTimeout");
         timeoutPreference.getEditText().setInputType(InputType.TYPE_CLASS_NUMBER);
+        timeoutPreference = (EditTextPreference) findPreference("appMessageWindow");
+        timeoutPreference.getEditText().setInputType(InputType.TYPE_CLASS_NUMBER);
+        timeoutPreference = (EditTextPreference) findPreference("historyDepth");
+        timeoutPreference.getEditText().setInputType(InputType.TYPE_CLASS_NUMBER);
+        timeoutPreference = (EditTextPreference) findPreference("historyMaxAge");
+        timeoutPreference.getEditText().setInputType(InputType.TYPE_CLASS_NUMBER);
+        timeoutPreference = (EditTextPreference) findPreference("historyMaxSize");
+        timeoutPreference.getEditText().setInputType(InputType.TYPE_CLASS_NUMBER);
 
         try
         {
@@ -106,6 +106,7 @@ public class PerAppActivity extends Activity
         category.add(new QuietHoursItem(settingsStorage, R.string.settingQuietHours, R.string.settingQuietHoursDescription));
         category.add(new CheckBoxItem(settingsStorage, AppSetting.SAVE_TO_HISTORY, R.string.settingSaveToHistory, R.string.settingSaveToHistoryDescription));
         category.add(new CheckBoxItem(settingsStorage, AppSetting.DISMISS_UPRWADS, R.string.settingDismissUpwards, R.string.settingDismissUpwardsDescripition));
+        category.add(new EditTextItem(settingsStorage, AppSetting.UPDATE_COALESCE_WINDOW, InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_VARIATION_NORMAL, R.string.settingUpdateCoalesceWindow, R.string.settingUpdateCoalesceWindowDescription));
         settings.add(new SettingsCategory(0, category));
 
         //Actions
@@ -6,6 +6,7 @@ import android.widget.EditText;
 import com.matejdro.pebblenotificationcenter.R;
 import com.matejdro.pebblenotificationcenter.appsetting.AppSetting;
 import com.matejdro.pebblenotificationcenter.appsetting.AppSettingStorage;
+import com.matejdro.pebblenotificationcenter.notifications.RegexFilterCache;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -128,6 +129,15 @@ public class RegexItem extends ListItem
     }
 
 
+    @Override
+    public boolean onClose()
+    {
+        boolean result = super.onClose();
+        RegexFilterCache.invalidate();
+
+        return result;
+    }
+
     private static boolean isRegexValid(String text)
     {
         if (text.trim().isEmpty())
@@ -3,6 +3,8 @@ package com.matejdro.pebblenotificationcenter.util;
 import android.content.Context;
 import android.os.Environment;
 import com.google.common.io.Files;
+import com.matejdro.pebblenotificationcenter.PebbleNotificationCenter;
+import com.matejdro.pebblenotificationcenter.notifications.RegexFilterCache;
 import java.io.File;
 import java.io.IOException;
 
@@ -86,6 +88,9 @@ public class ConfigBackup
             context.getSharedPreferences(file.getName().substring(0, file.getName().length() - 4), Context.MODE_MULTI_PROCESS);
         }
 
+        RegexFilterCache.invalidate();
+        PebbleNotificationCenter.getInMemorySettings().invalidateAppSettings();
+
         return true;
     }
 }
@@ -4,6 +4,8 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 import com.matejdro.pebblenotificationcenter.PebbleNotificationCenter;
+import com.matejdro.pebblenotificationcenter.appsetting.AppSettingStorage;
+import com.matejdro.pebblenotificationcenter.appsetting.AppSettingsCache;
 import com.matejdro.pebblenotificationcenter.appsetting.DefaultAppSettingsStorage;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -15,44 +17,44 @@ public class SettingsMemoryStorage {
 	
 	private SharedPreferences preferences;
     private DefaultAppSettingsStorage appSettingsStorage;
-	private HashMap<String, String> replacingStrings;
+    private AppSettingsCache appSettingsCache;
+	private StringReplacer characterReplacer;
 	
 	public SettingsMemoryStorage(Context context)
 	{
 		this.context = context;
 		this.preferences = PreferenceManager.getDefaultSharedPreferences(context);
-		this.replacingStrings = new HashMap<String, String>();
+        this.appSettingsCache = new AppSettingsCache(context, preferences);
 	}
 	
-	public void markDirty()
+	public synchronized void markDirty()
 	{
 		dirty = true;
 	}
 	
 	private void loadSettings()
 	{
-		replacingStrings.clear();
-
 		preferences = PreferenceManager.getDefaultSharedPreferences(context);
         appSettingsStorage = new DefaultAppSettingsStorage(preferences, preferences.edit());
 
+		HashMap<String, String> replacingStrings = new HashMap<String, String>();
 		Iterator<String> replacingKeys = PreferencesUtil.getDirectIterator(preferences, PebbleNotificationCenter.REPLACING_KEYS_LIST);
 		Iterator<String> replacingValues = PreferencesUtil.getDirectIterator(preferences, PebbleNotificationCenter.REPLACING_VALUES_LIST);
 		while (replacingKeys.hasNext() && replacingValues.hasNext())
 		{
 			String keyString = replacingKeys.next();
+			String valueString = replacingValues.next();
 			if (keyString.isEmpty())
 				continue;
-			
-			String valueString = replacingValues.next();
-			
+
 			replacingStrings.put(keyString, valueString);
 		}
+		characterReplacer = new StringReplacer(replacingStrings);
 
 		dirty = false;
 	}
 	
-	public SharedPreferences getSharedPreferences()
+	public synchronized SharedPreferences getSharedPreferences()
 	{
 		if (dirty)
 			loadSettings();
@@ -60,7 +62,7 @@ public class SettingsMemoryStorage {
 		return preferences;
 	}
 
-    public DefaultAppSettingsStorage getDefaultSettingsStorage()
+    public synchronized DefaultAppSettingsStorage getDefaultSettingsStorage()
     {
         if (dirty)
             loadSettings();
@@ -68,12 +70,25 @@ public class SettingsMemoryStorage {
         return appSettingsStorage;
     }
 
+    /**
+     * @return read-only cached settings of specified app (or default settings if package is null).
+     */
+    public AppSettingStorage getAppSettingStorage(String pkg)
+    {
+        return appSettingsCache.get(pkg);
+    }
+
+    public void invalidateAppSettings()
+    {
+        appSettingsCache.invalidate();
+    }
+
 
-	public HashMap<String, String> getReplacingStrings()
+	public synchronized StringReplacer getCharacterReplacer()
 	{
 		if (dirty)
 			loadSettings();
 		
-		return replacingStrings;
+		return characterReplacer;
 	}
 }
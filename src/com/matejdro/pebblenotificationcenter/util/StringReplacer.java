@@ -0,0 +1,144 @@
+package com.matejdro.pebblenotificationcenter.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replaces many strings at once in a single pass over the text. Replacement strings are stored in a trie and
+ * at every position the longest matching string is replaced. Replaced text is not scanned again.
+ *
+ * Instances are immutable and can be used from any thread.
+ */
+public class StringReplacer
+{
+    private final Node root;
+
+    public StringReplacer(Map<String, String> replacements)
+    {
+        BuildNode buildRoot = new BuildNode();
+        for (Map.Entry<String, String> entry : replacements.entrySet())
+        {
+            String key = entry.getKey();
+            if (key == null || key.isEmpty())
+                continue;
+
+            BuildNode node = buildRoot;
+            for (int i = 0; i < key.length(); i++)
+            {
+                char c = key.charAt(i);
+                BuildNode child = node.children.get(c);
+                if (child == null)
+                {
+                    child = new BuildNode();
+                    node.children.put(c, child);
+                }
+
+                node = child;
+            }
+
+            node.replacement = entry.getValue() == null ? "" : entry.getValue();
+        }
+
+        root = buildRoot.freeze();
+    }
+
+    public boolean isEmpty()
+    {
+        return root.keys.length == 0;
+    }
+
+    public String replace(String input)
+    {
+        if (input == null || isEmpty())
+            return input;
+
+        StringBuilder output = null;
+        int copiedUntil = 0;
+
+        int position = 0;
+        while (position < input.length())
+        {
+            String matchReplacement = null;
+            int matchEnd = 0;
+
+            Node node = root;
+            for (int i = position; i < input.length(); i++)
+            {
+                node = node.getChild(input.charAt(i));
+                if (node == null)
+                    break;
+
+                if (node.replacement != null)
+                {
+                    matchReplacement = node.replacement;
+                    matchEnd = i + 1;
+                }
+            }
+
+            if (matchReplacement == null)
+            {
+                position++;
+                continue;
+            }
+
+            if (output == null)
+                output = new StringBuilder(input.length() + 16);
+
+            output.append(input, copiedUntil, position).append(matchReplacement);
+            copiedUntil = matchEnd;
+            position = matchEnd;
+        }
+
+        if (output == null)
+            return input;
+
+        output.append(input, copiedUntil, input.length());
+        return output.toString();
+    }
+
+    private static class Node
+    {
+        private final char[] keys;
+        private final Node[] children;
+        private final String replacement;
+
+        private Node(char[] keys, Node[] children, String replacement)
+        {
+            this.keys = keys;
+            this.children = children;
+            this.replacement = replacement;
+        }
+
+        private Node getChild(char c)
+        {
+            int index = Arrays.binarySearch(keys, c);
+            if (index < 0)
+                return null;
+
+            return children[index];
+        }
+    }
+
+    private static class BuildNode
+    {
+        private TreeMap<Character, BuildNode> children = new TreeMap<Character, BuildNode>();
+        private String replacement;
+
+        private Node freeze()
+        {
+            char[] keys = new char[children.size()];
+            Node[] frozenChildren = new Node[children.size()];
+
+            int i = 0;
+            for (Map.Entry<Character, BuildNode> entry : children.entrySet())
+            {
+                keys[i] = entry.getKey();
+                frozenChildren[i] = entry.getValue().freeze();
+                i++;
+            }
+
+            return new Node(keys, frozenChildren, replacement);
+        }
+    }
+}
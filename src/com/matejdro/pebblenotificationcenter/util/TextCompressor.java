@@ -0,0 +1,103 @@
+package com.matejdro.pebblenotificationcenter.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses short notification texts with deflate. Preset dictionary of phrases that are common in notifications
+ * makes compression worthwhile even for texts that are only few hundred bytes long.
+ *
+ * Compressed data starts with format byte. Dictionary of existing format must never change, since stored data depends on it.
+ * Instances are not thread-safe.
+ */
+public class TextCompressor
+{
+    private static final byte FORMAT_DEFLATE_DICTIONARY_1 = 1;
+
+    //Most common strings should be at the end, since they can be referenced with shorter distances
+    private static final byte[] DICTIONARY_1 = ("" +
+            "Sent from my phone. Download attachment. Reply Mark as read Archive Delete " +
+            "Your order has been shipped. Track your package. Your ride is arriving. Tap to view. " +
+            "is calling. Incoming call. Missed call from Voicemail. New voicemail from " +
+            "commented on your post. liked your photo. mentioned you in a comment. started following you. " +
+            "Your verification code is . Do not share this code with anyone. Your one-time password is " +
+            "Meeting reminder: Event starts in 15 minutes. Tomorrow at Today at " +
+            "http://www. https://www. .com/ " +
+            "sent you a message. sent a photo. sent a sticker. is typing... new messages from " +
+            "You have new messages. You have a new message from ").getBytes(TextUtil.UTF_8);
+
+    private Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    private byte[] buffer = new byte[1024];
+
+    /**
+     * @return compressed text or null if compressed text would not be smaller than the original.
+     */
+    public byte[] compress(String text)
+    {
+        byte[] input = text.getBytes(TextUtil.UTF_8);
+
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY_1);
+        deflater.setInput(input);
+        deflater.finish();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(input.length);
+        output.write(FORMAT_DEFLATE_DICTIONARY_1);
+        while (!deflater.finished())
+        {
+            int length = deflater.deflate(buffer);
+            output.write(buffer, 0, length);
+
+            if (output.size() >= input.length)
+                return null;
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * @return decompressed text or null if data is corrupted.
+     */
+    public static String decompress(byte[] data)
+    {
+        if (data.length == 0 || data[0] != FORMAT_DEFLATE_DICTIONARY_1)
+            return null;
+
+        Inflater inflater = new Inflater(true);
+        try
+        {
+            inflater.setDictionary(DICTIONARY_1);
+            //Raw deflate stream needs one extra dummy byte at the end to finish properly
+            byte[] input = new byte[data.length];
+            System.arraycopy(data, 1, input, 0, data.length - 1);
+            inflater.setInput(input);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished())
+            {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    return null;
+
+                output.write(buffer, 0, length);
+            }
+
+            return new String(output.toByteArray(), TextUtil.UTF_8);
+        } catch (DataFormatException e)
+        {
+            return null;
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    public void release()
+    {
+        deflater.end();
+    }
+}
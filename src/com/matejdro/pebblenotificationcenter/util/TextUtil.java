@@ -1,12 +1,15 @@
 package com.matejdro.pebblenotificationcenter.util;
 
 import com.matejdro.pebblenotificationcenter.PebbleNotificationCenter;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 
 
 public class TextUtil
 {
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+
     public static String prepareString(String text)
     {
         return prepareString(text, 20);
@@ -34,13 +37,7 @@ public class TextUtil
         if(input == null)
             return input;
 
-        HashMap<String, String> replacementTable = PebbleNotificationCenter.getInMemorySettings().getReplacingStrings();
-        for (Map.Entry<String, String> e : replacementTable.entrySet())
-        {
-            input = input.replace(e.getKey(), e.getValue());
-        }
-
-        return input;
+        return PebbleNotificationCenter.getInMemorySettings().getCharacterReplacer().replace(input);
     }
 
     public static String trimString(String text)
@@ -59,15 +56,9 @@ public class TextUtil
             targetLength -= 3;
         }
 
-        if (text.getBytes().length > length)
+        if (getUtf8Length(text) > length)
         {
-            if (text.length() > targetLength)
-                text = text.substring(0, targetLength);
-
-            while (text.getBytes().length > targetLength)
-            {
-                text = text.substring(0, text.length() - 1);
-            }
+            text = text.substring(0, getUtf8PrefixEnd(text, 0, targetLength));
 
             if (trailingElipsis)
                 text = text + "...";
@@ -82,14 +73,164 @@ public class TextUtil
         if (text == null)
             return null;
 
-        while (text.getBytes().length > length)
+        int bytes = 0;
+        int start = text.length();
+        while (start > 0)
         {
-            text = text.substring(1);
+            int charStart = start - 1;
+            if (charStart > 0 && Character.isLowSurrogate(text.charAt(charStart)) && Character.isHighSurrogate(text.charAt(charStart - 1)))
+                charStart--;
+
+            bytes += getCharUtf8Length(text, charStart, text.length());
+            if (bytes > length)
+                break;
+
+            start = charStart;
         }
 
-        return text;
+        return text.substring(start);
+    }
+
+    /**
+     * Splits text into UTF-8 encoded chunks of at most maxBytes bytes. Characters are never split between two chunks.
+     */
+    public static List<byte[]> splitToUtf8Chunks(String text, int maxBytes)
+    {
+        List<byte[]> chunks = new ArrayList<byte[]>();
+
+        int start = 0;
+        while (start < text.length())
+        {
+            int end = getUtf8PrefixEnd(text, start, maxBytes);
+            if (end == start) //maxBytes is too small to even hold one character
+                break;
+
+            byte[] chunk = new byte[getUtf8Length(text, start, end)];
+            encodeUtf8(text, start, end, chunk, 0);
+            chunks.add(chunk);
+
+            start = end;
+        }
+
+        return chunks;
     }
 
+    public static int getUtf8Length(String text)
+    {
+        return getUtf8Length(text, 0, text.length());
+    }
+
+    public static int getUtf8Length(String text, int start, int end)
+    {
+        int bytes = 0;
+        int i = start;
+        while (i < end)
+        {
+            bytes += getCharUtf8Length(text, i, end);
+            i += getCharCount(text, i, end);
+        }
+
+        return bytes;
+    }
+
+    /**
+     * @return index of the first character after the longest prefix of text (starting at start) that fits into maxBytes when encoded as UTF-8.
+     */
+    public static int getUtf8PrefixEnd(String text, int start, int maxBytes)
+    {
+        int bytes = 0;
+        int i = start;
+        while (i < text.length())
+        {
+            bytes += getCharUtf8Length(text, i, text.length());
+            if (bytes > maxBytes)
+                break;
+
+            i += getCharCount(text, i, text.length());
+        }
+
+        return i;
+    }
+
+    /**
+     * Encodes text as UTF-8 into target array. Unpaired surrogates are encoded as '?', same as String.getBytes() does.
+     *
+     * @return position in target array after last written byte.
+     */
+    public static int encodeUtf8(String text, int start, int end, byte[] target, int offset)
+    {
+        int i = start;
+        while (i < end)
+        {
+            int codePoint;
+            int charCount = getCharCount(text, i, end);
+            char c = text.charAt(i);
+            if (charCount == 2)
+                codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+            else if (isSurrogate(c))
+                codePoint = '?';
+            else
+                codePoint = c;
+
+            if (codePoint < 0x80)
+            {
+                target[offset++] = (byte) codePoint;
+            }
+            else if (codePoint < 0x800)
+            {
+                target[offset++] = (byte) (0xC0 | (codePoint >> 6));
+                target[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else if (codePoint < 0x10000)
+            {
+                target[offset++] = (byte) (0xE0 | (codePoint >> 12));
+                target[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                target[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else
+            {
+                target[offset++] = (byte) (0xF0 | (codePoint >> 18));
+                target[offset++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                target[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                target[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+
+            i += charCount;
+        }
+
+        return offset;
+    }
+
+    /**
+     * @return number of UTF-8 bytes of the character at specified index (surrogate pair counts as one character).
+     */
+    private static int getCharUtf8Length(String text, int index, int end)
+    {
+        char c = text.charAt(index);
+        if (c < 0x80)
+            return 1;
+        else if (c < 0x800)
+            return 2;
+        else if (!isSurrogate(c))
+            return 3;
+        else if (getCharCount(text, index, end) == 2)
+            return 4;
+        else
+            return 1;
+    }
+
+    private static boolean isSurrogate(char c)
+    {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+
+    private static int getCharCount(String text, int index, int end)
+    {
+        if (Character.isHighSurrogate(text.charAt(index)) && index + 1 < end && Character.isLowSurrogate(text.charAt(index + 1)))
+            return 2;
+
+        return 1;
+    }
 
     public static boolean isInteger(String text)
     {
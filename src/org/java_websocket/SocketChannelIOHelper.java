@@ -5,6 +5,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
 
 import org.java_websocket.WebSocket.Role;
+import org.java_websocket.util.ByteBufferPool;
 
 public class SocketChannelIOHelper {
 
@@ -55,6 +56,7 @@ public class SocketChannelIOHelper {
 					return false;
 				} else {
 					ws.outQueue.poll(); // Buffer finished. Remove it.
+					ByteBufferPool.DEFAULT.release( buffer );
 					buffer = ws.outQueue.peek();
 				}
 			} while ( buffer != null );
@@ -81,7 +81,7 @@ public interface WebSocketListener {
 	 * @param conn
 	 *            The <tt>WebSocket</tt> instance this event is occurring on.
 	 * @param blob
-	 *            The binary message that was received.
+	 *            The binary message that was received. It is a view of the receive buffer which is only valid until this method returns.
 	 */
 	public void onWebsocketMessage( WebSocket conn, ByteBuffer blob );
 
@@ -24,6 +24,7 @@ import org.java_websocket.framing.Framedata.Opcode;
 import org.java_websocket.handshake.HandshakeImpl1Client;
 import org.java_websocket.handshake.Handshakedata;
 import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.util.ByteBufferPool;
 
 /**
  * A subclass must implement at least <var>onOpen</var>, <var>onClose</var>, and <var>onMessage</var> to be
@@ -178,11 +179,15 @@ public abstract class WebSocketClient extends WebSocketAdapter implements Runnab
 		writeThread.start();
 
 		byte[] rawbuffer = new byte[ WebSocketImpl.RCVBUF ];
+		ByteBuffer buffer = ByteBuffer.wrap( rawbuffer );
 		int readBytes;
 
 		try {
 			while ( !isClosed() && ( readBytes = istream.read( rawbuffer ) ) != -1 ) {
-				engine.decode( ByteBuffer.wrap( rawbuffer, 0, readBytes ) );
+				// received payloads are slices of rawbuffer, they are only valid until the next read
+				buffer.clear();
+				buffer.limit( readBytes );
+				engine.decode( buffer );
 			}
 			engine.eot();
 		} catch ( IOException e ) {
@@ -337,6 +342,9 @@ public abstract class WebSocketClient extends WebSocketAdapter implements Runnab
 	public abstract void onMessage( String message );
 	public abstract void onClose( int code, String reason, boolean remote );
 	public abstract void onError( Exception ex );
+	/**
+	 * <code>bytes</code> points directly into the receive buffer. It is only valid until this method returns, copy the data to keep it.
+	 */
 	public void onMessage( ByteBuffer bytes ) {
 	}
 	public void onFragment( Framedata frame ) {
@@ -351,6 +359,7 @@ public abstract class WebSocketClient extends WebSocketAdapter implements Runnab
 					ByteBuffer buffer = engine.outQueue.take();
 					ostream.write( buffer.array(), 0, buffer.limit() );
 					ostream.flush();
+					ByteBufferPool.DEFAULT.release( buffer );
 				}
 			} catch ( IOException e ) {
 				engine.eot();
@@ -1,5 +1,4 @@
 package org.java_websocket.drafts;
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -26,6 +25,7 @@ import org.java_websocket.handshake.Handshakedata;
 import org.java_websocket.handshake.ServerHandshake;
 import org.java_websocket.handshake.ServerHandshakeBuilder;
 import org.java_websocket.util.Base64;
+import org.java_websocket.util.ByteBufferPool;
 import org.java_websocket.util.Charsetfunctions;
 
 public class Draft_10 extends Draft {
@@ -61,6 +61,8 @@ public class Draft_10 extends Draft {
 	}
 
 	private ByteBuffer incompleteframe;
+	/** Buffer of the last completed incomplete frame. Its payload was passed on as a slice, so it is released on the next call only. */
+	private ByteBuffer completedframe;
 	private Framedata fragmentedframe = null;
 
 	private final Random reuseableRandom = new Random();
@@ -92,32 +94,31 @@ public class Draft_10 extends Draft {
 	public ByteBuffer createBinaryFrame( Framedata framedata ) {
 		ByteBuffer mes = framedata.getPayloadData();
 		boolean mask = role == Role.CLIENT; // framedata.getTransfereMasked();
-		int sizebytes = mes.remaining() <= 125 ? 1 : mes.remaining() <= 65535 ? 2 : 8;
-		ByteBuffer buf = ByteBuffer.allocate( 1 + ( sizebytes > 1 ? sizebytes + 1 : sizebytes ) + ( mask ? 4 : 0 ) + mes.remaining() );
+		int payloadlength = mes.remaining();
+		int sizebytes = payloadlength <= 125 ? 1 : payloadlength <= 65535 ? 2 : 8;
+		// the frame is released to the pool once it has been written to the socket
+		ByteBuffer buf = ByteBufferPool.DEFAULT.acquire( 1 + ( sizebytes > 1 ? sizebytes + 1 : sizebytes ) + ( mask ? 4 : 0 ) + payloadlength );
 		byte optcode = fromOpcode( framedata.getOpcode() );
 		byte one = (byte) ( framedata.isFin() ? -128 : 0 );
 		one |= optcode;
 		buf.put( one );
-		byte[] payloadlengthbytes = toByteArray( mes.remaining(), sizebytes );
-		assert ( payloadlengthbytes.length == sizebytes );
 
 		if( sizebytes == 1 ) {
-			buf.put( (byte) ( (byte) payloadlengthbytes[ 0 ] | ( mask ? (byte) -128 : 0 ) ) );
+			buf.put( (byte) ( (byte) payloadlength | ( mask ? (byte) -128 : 0 ) ) );
 		} else if( sizebytes == 2 ) {
 			buf.put( (byte) ( (byte) 126 | ( mask ? (byte) -128 : 0 ) ) );
-			buf.put( payloadlengthbytes );
+			buf.putShort( (short) payloadlength );
 		} else if( sizebytes == 8 ) {
 			buf.put( (byte) ( (byte) 127 | ( mask ? (byte) -128 : 0 ) ) );
-			buf.put( payloadlengthbytes );
+			buf.putLong( payloadlength );
 		} else
 			throw new RuntimeException( "Size representation not supported/specified" );
 
 		if( mask ) {
-			ByteBuffer maskkey = ByteBuffer.allocate( 4 );
-			maskkey.putInt( reuseableRandom.nextInt() );
-			buf.put( maskkey.array() );
+			int maskkey = reuseableRandom.nextInt();
+			buf.putInt( maskkey );
 			for( int i = 0 ; mes.hasRemaining() ; i++ ) {
-				buf.put( (byte) ( mes.get() ^ maskkey.get( i % 4 ) ) );
+				buf.put( (byte) ( mes.get() ^ ( maskkey >>> ( 24 - 8 * ( i & 3 ) ) ) ) );
 			}
 		} else
 			buf.put( mes );
@@ -209,15 +210,6 @@ public class Draft_10 extends Draft {
 		return response;
 	}
 
-	private byte[] toByteArray( long val, int bytecount ) {
-		byte[] buffer = new byte[ bytecount ];
-		int highest = 8 * bytecount - 8;
-		for( int i = 0 ; i < bytecount ; i++ ) {
-			buffer[ i ] = (byte) ( val >>> ( highest - 8 * i ) );
-		}
-		return buffer;
-	}
-
 	private Opcode toOpcode( byte opcode ) throws InvalidFrameException {
 		switch ( opcode ) {
 			case 0:
@@ -244,6 +236,12 @@ public class Draft_10 extends Draft {
 		List<Framedata> frames = new LinkedList<Framedata>();
 		Framedata cur;
 
+		// frames returned by the previous call have been processed by now
+		if( completedframe != null ) {
+			ByteBufferPool.DEFAULT.release( completedframe );
+			completedframe = null;
+		}
+
 		if( incompleteframe != null ) {
 			// complete an incomplete frame
 			while ( true ) {
@@ -254,24 +252,26 @@ public class Draft_10 extends Draft {
 
 					if( expected_next_byte_count > available_next_byte_count ) {
 						// did not receive enough bytes to complete the frame
-						incompleteframe.put( buffer.array(), buffer.position(), available_next_byte_count );
+						incompleteframe.put( buffer.array(), buffer.arrayOffset() + buffer.position(), available_next_byte_count );
 						buffer.position( buffer.position() + available_next_byte_count );
 						return Collections.emptyList();
 					}
-					incompleteframe.put( buffer.array(), buffer.position(), expected_next_byte_count );
+					incompleteframe.put( buffer.array(), buffer.arrayOffset() + buffer.position(), expected_next_byte_count );
 					buffer.position( buffer.position() + expected_next_byte_count );
 
 					cur = translateSingleFrame( (ByteBuffer) incompleteframe.duplicate().position( 0 ) );
 					frames.add( cur );
+					completedframe = incompleteframe;
 					incompleteframe = null;
 					break; // go on with the normal frame receival
 				} catch ( IncompleteException e ) {
 					// extending as much as suggested
 					int oldsize = incompleteframe.limit();
-					ByteBuffer extendedframe = ByteBuffer.allocate( checkAlloc( e.getPreferedSize() ) );
+					ByteBuffer extendedframe = ByteBufferPool.DEFAULT.acquire( checkAlloc( e.getPreferedSize() ) );
 					assert ( extendedframe.limit() > incompleteframe.limit() );
 					incompleteframe.rewind();
 					extendedframe.put( incompleteframe );
+					ByteBufferPool.DEFAULT.release( incompleteframe );
 					incompleteframe = extendedframe;
 					
 					return translateFrame( buffer );
@@ -288,7 +288,7 @@ public class Draft_10 extends Draft {
 				// remember the incomplete data
 				buffer.reset();
 				int pref = e.getPreferedSize();
-				incompleteframe = ByteBuffer.allocate( checkAlloc( pref ) );
+				incompleteframe = ByteBufferPool.DEFAULT.acquire( checkAlloc( pref ) );
 				incompleteframe.put( buffer );
 				break;
 			}
@@ -296,6 +296,9 @@ public class Draft_10 extends Draft {
 		return frames;
 	}
 
+	/**
+	 * The payload of the returned frame is a slice of <code>buffer</code> (masked payloads are unmasked in place), so it is only valid as long as the buffer content is not overwritten.
+	 **/
 	public Framedata translateSingleFrame( ByteBuffer buffer ) throws IncompleteException , InvalidDataException {
 		int maxpacketsize = buffer.remaining();
 		int realpacketsize = 2;
@@ -326,19 +329,12 @@ public class Draft_10 extends Draft {
 				realpacketsize += 2; // additional length bytes
 				if( maxpacketsize < realpacketsize )
 					throw new IncompleteException( realpacketsize );
-				byte[] sizebytes = new byte[ 3 ];
-				sizebytes[ 1 ] = buffer.get( /*1 + 1*/);
-				sizebytes[ 2 ] = buffer.get( /*1 + 2*/);
-				payloadlength = new BigInteger( sizebytes ).intValue();
+				payloadlength = buffer.getShort( /*1 + 1*/) & 0xFFFF;
 			} else {
 				realpacketsize += 8; // additional length bytes
 				if( maxpacketsize < realpacketsize )
 					throw new IncompleteException( realpacketsize );
-				byte[] bytes = new byte[ 8 ];
-				for( int i = 0 ; i < 8 ; i++ ) {
-					bytes[ i ] = buffer.get( /*1 + i*/);
-				}
-				long length = new BigInteger( bytes ).longValue();
+				long length = buffer.getLong( /*1 + 1*/);
 				if( length > Integer.MAX_VALUE ) {
 					throw new LimitExedeedException( "Payloadsize is to big..." );
 				} else {
@@ -355,17 +351,17 @@ public class Draft_10 extends Draft {
 		if( maxpacketsize < realpacketsize )
 			throw new IncompleteException( realpacketsize );
 
-		ByteBuffer payload = ByteBuffer.allocate( checkAlloc( payloadlength ) );
+		checkAlloc( payloadlength );
 		if( MASK ) {
-			byte[] maskskey = new byte[ 4 ];
-			buffer.get( maskskey );
+			int maskkey = buffer.getInt();
+			int payloadstart = buffer.position();
 			for( int i = 0 ; i < payloadlength ; i++ ) {
-				payload.put( (byte) ( (byte) buffer.get( /*payloadstart + i*/) ^ (byte) maskskey[ i % 4 ] ) );
+				buffer.put( payloadstart + i, (byte) ( buffer.get( payloadstart + i ) ^ ( maskkey >>> ( 24 - 8 * ( i & 3 ) ) ) ) );
 			}
-		} else {
-			payload.put( buffer.array(), buffer.position(), payload.limit() );
-			buffer.position( buffer.position() + payload.limit() );
 		}
+		ByteBuffer payload = buffer.slice();
+		payload.limit( payloadlength );
+		buffer.position( buffer.position() + payloadlength );
 
 		FrameBuilder frame;
 		if( optcode == Opcode.CLOSING ) {
@@ -375,14 +371,15 @@ public class Draft_10 extends Draft {
 			frame.setFin( FIN );
 			frame.setOptcode( optcode );
 		}
-		payload.flip();
 		frame.setPayload( payload );
 		return frame;
 	}
 
 	@Override
 	public void reset() {
+		// not released to the pool, reset may be called while frames of the current read are still being processed
 		incompleteframe = null;
+		completedframe = null;
 	}
 
 	@Override
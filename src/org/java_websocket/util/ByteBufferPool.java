@@ -0,0 +1,100 @@
+package org.java_websocket.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pool of heap buffers used for frame encoding and for frames which arrive in several reads.<br>
+ * Buffers are grouped into power of two size classes. Requests bigger than the largest class are simply allocated.
+ **/
+public class ByteBufferPool {
+
+	public static final ByteBufferPool DEFAULT = new ByteBufferPool();
+
+	private static final int MIN_SIZE_SHIFT = 6; // 64 bytes
+	private static final int MAX_SIZE_SHIFT = 16; // 64 KiB
+	private static final int BUFFERS_PER_CLASS = 4;
+
+	private final ByteBuffer[][] pooled = new ByteBuffer[ MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1 ][ BUFFERS_PER_CLASS ];
+	private final int[] pooledcount = new int[ pooled.length ];
+
+	private long allocatedcount;
+	private long reusedcount;
+
+	/**
+	 * @return cleared buffer with position 0 and limit <code>size</code>. Its capacity may be larger.
+	 */
+	public ByteBuffer acquire( int size ) {
+		int sizeclass = sizeClass( size );
+		if( sizeclass < 0 ) {
+			synchronized ( this ) {
+				allocatedcount++;
+			}
+			return ByteBuffer.allocate( size );
+		}
+
+		ByteBuffer buf = null;
+		synchronized ( this ) {
+			int count = pooledcount[ sizeclass ];
+			if( count > 0 ) {
+				count--;
+				buf = pooled[ sizeclass ][ count ];
+				pooled[ sizeclass ][ count ] = null;
+				pooledcount[ sizeclass ] = count;
+				reusedcount++;
+			} else {
+				allocatedcount++;
+			}
+		}
+
+		if( buf == null )
+			buf = ByteBuffer.allocate( 1 << ( sizeclass + MIN_SIZE_SHIFT ) );
+		buf.clear();
+		buf.limit( size );
+		return buf;
+	}
+
+	/**
+	 * Returns the buffer to the pool. The buffer and any slices of it must not be used afterwards.<br>
+	 * Buffers which were not obtained from {@link #acquire(int)} are accepted as long as nothing else references them.
+	 */
+	public void release( ByteBuffer buf ) {
+		if( buf == null || buf.isDirect() || buf.isReadOnly() || !buf.hasArray() || buf.arrayOffset() != 0 )
+			return;
+		int capacity = buf.capacity();
+		if( Integer.bitCount( capacity ) != 1 )
+			return;
+		int sizeclass = Integer.numberOfTrailingZeros( capacity ) - MIN_SIZE_SHIFT;
+		if( sizeclass < 0 || sizeclass >= pooled.length )
+			return;
+
+		synchronized ( this ) {
+			int count = pooledcount[ sizeclass ];
+			if( count == BUFFERS_PER_CLASS )
+				return;
+			pooled[ sizeclass ][ count ] = buf;
+			pooledcount[ sizeclass ] = count + 1;
+		}
+	}
+
+	/**
+	 * @return how many buffers had to be allocated since the pool was created.
+	 */
+	public synchronized long getAllocatedCount() {
+		return allocatedcount;
+	}
+
+	/**
+	 * @return how many requests were served with a pooled buffer since the pool was created.
+	 */
+	public synchronized long getReusedCount() {
+		return reusedcount;
+	}
+
+	private static int sizeClass( int size ) {
+		if( size <= 1 << MIN_SIZE_SHIFT )
+			return 0;
+		if( size > 1 << MAX_SIZE_SHIFT )
+			return -1;
+		return 32 - Integer.numberOfLeadingZeros( size - 1 ) - MIN_SIZE_SHIFT;
+	}
+}